@@ -9,49 +9,87 @@ import java.nio.file.Path;
 import java.util.*;
 
 /**
- * CPU, executes instructions for a process provided to it by the scheduler.<br>
- * Each cycle, the CPU will either execute an instruction, or get the data required from memory to execute the current
- * instruction
+ * CPU core, executes instructions for a process provided to it by the scheduler.<br>
+ * Each cycle, the core will either execute an instruction, or get the data required from memory to execute the current
+ * instruction. Any number of cores can run against one scheduler, all state for the current process is kept in its
+ * PCB, and everything else here belongs to this core alone.
  * @author cd00827
  */
 public class CPU implements Runnable {
+    private final int core;
+    private final String label;
     private PCB process;
+    //True once the current process has been blocked this cycle
+    private boolean blocked;
     private final Scheduler scheduler;
-    private final double clockSpeed;
+    private final Clock clock;
     private final Mailbox mailbox;
     private final ObservableList<String> trace;
     private final ObservableList<String> output;
-    private final Deque<String> dataBuffer;
-    //Cache of each process's current instruction
-    private final Map<Integer, String> instructionCache;
-    //Cache of each process's defined variables
-    private final Map<Integer, Map<String, Integer>> varCache;
-    //Cache of each process's defined labels
-    private final Map<Integer, Map<String, Integer>> labelCache;
-    private List<String> mathVars;
-    //The BufferedWriter each process uses to write its outputs to a file
-    private final Map<Integer, BufferedWriter> outputs;
+    private final Deque<Message> dataBuffer;
+    //Scratch space for evaluating math expressions, grown as needed
+    private double[] operands;
+    private double[] stack;
+    //Size of each process' data cache, 0 if caching is disabled
+    private final int cacheSize;
+    //Number of blocks of code to read ahead of the PC on each instruction fetch
+    private final int prefetch;
+    private long instructions;
+    private long cacheHits;
+    private long cacheMisses;
 
     /**
      * Constructor
+     * @param core Number of this core
      * @param scheduler Reference to scheduler governing this CPU
      * @param mailbox Mailbox to control this CPU with
-     * @param clockSpeed Number of instructions to execute per second
+     * @param clock Clock to pace this core with
+     * @param cacheSize Number of entries in each process' data cache, 0 to disable caching
+     * @param prefetch Number of blocks of code to fetch at once, 1 to fetch one instruction at a time
      * @param trace Log to output the execution trace to
      * @param output Log to output messages and the result of processes to
      */
-    public CPU(Scheduler scheduler, Mailbox mailbox, double clockSpeed, ObservableList<String> trace, ObservableList<String> output) {
+    public CPU(int core, Scheduler scheduler, Mailbox mailbox, Clock clock, int cacheSize, int prefetch, ObservableList<String> trace, ObservableList<String> output) {
+        this.core = core;
+        this.label = Mailbox.cpu(core);
         this.scheduler = scheduler;
         this.mailbox = mailbox;
-        this.clockSpeed = clockSpeed;
+        this.clock = clock;
         this.trace = trace;
         this.output = output;
         this.process = null;
         this.dataBuffer = new ArrayDeque<>();
-        this.instructionCache = new HashMap<>();
-        this.varCache = new HashMap<>();
-        this.labelCache = new HashMap<>();
-        this.outputs = new HashMap<>();
+        this.operands = new double[0];
+        this.stack = new double[0];
+        this.cacheSize = cacheSize;
+        this.prefetch = Math.max(prefetch, 1);
+        this.instructions = 0;
+        this.cacheHits = 0;
+        this.cacheMisses = 0;
+    }
+
+    /**
+     * Get the number of instructions this core has completed
+     * @return Instructions
+     */
+    public long getInstructions() {
+        return this.instructions;
+    }
+
+    /**
+     * Get the number of variable reads served by data caches on this core
+     * @return Cache hits
+     */
+    public long getCacheHits() {
+        return this.cacheHits;
+    }
+
+    /**
+     * Get the number of variable reads this core had to request from memory after checking the data cache
+     * @return Cache misses
+     */
+    public long getCacheMisses() {
+        return this.cacheMisses;
     }
 
     /**
@@ -76,80 +114,82 @@ public class CPU implements Runnable {
     @Override
     public void run() {
         while (true) {
-            //Remove data for any dropped processes
+            //Wait for next clock cycle, then remove data for any dropped processes
             {
-                boolean done = false;
-                while (!done) {
-                    Message message = this.mailbox.get(Mailbox.CPU);
-                    if (message != null) {
-                        String[] command = message.getCommand();
-                        if (command[0].equals("drop")) {
-                            int pid = Integer.parseInt(command[1]);
-                            this.instructionCache.remove(pid);
-                            this.varCache.remove(pid);
-                            this.labelCache.remove(pid);
-                            try {
-                                this.outputs.get(pid).close();
-                            } catch (Exception ignored) {}
-                            this.outputs.remove(pid);
-                            this.output("[CPU] Dropped PID " + pid);
-                        }
-                    }
-                    else{
-                        done = true;
-                    }
+                //If there is no process to run, sleep until the scheduler switches to one or a command arrives instead
+                //of waking every cycle
+                Message message = null;
+                try {
+                    if (this.getRunnable() == null) {
+                        this.clock.idle();
+                        message = this.mailbox.receive(this.label);
+                    }
+                    this.clock.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+
+                if (message == null) {
+                    message = this.mailbox.get(this.label);
+                }
+                while (message != null) {
+                    if (message.getCommand() == Command.DROP) {
+                        PCB dropped = (PCB) message.getData();
+                        try {
+                            dropped.getOutput().close();
+                        } catch (Exception ignored) {}
+                        dropped.setOutput(null);
+                        this.output("[CPU] Dropped PID " + dropped.getPid());
+                    }
+                    message = this.mailbox.get(this.label);
                 }
             }
 
             //Get a reference to running process
-            this.process = this.scheduler.getRunning();
+            this.process = this.acquire();
             if (this.process != null) {
                 int pid = this.process.getPid();
+                this.blocked = false;
                 this.dataBuffer.clear();
 
-                //Scan process file for labels, in a real system this would be done at compile time.
-                //Compiling the process code is beyond the scope of this simulator, but labels must be loaded here
-                //otherwise attempting to jump to a line that hasn't already been executed will fail
-                if (!this.labelCache.containsKey(pid)) {
-                    this.labelCache.put(pid, new HashMap<>());
-                    File file = new File(this.process.getCodePath().toString());
-                    try {
-                        BufferedReader reader = new BufferedReader(new FileReader(file));
-                        for (int i = 0; i < this.process.getCodeLength(); i++) {
-                            String[] split = reader.readLine().split(":", 2);
-                            if (split.length == 2) {
-                                this.labelCache.get(pid).put(split[0], i);
-                            }
-                        }
-                        reader.close();
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-
-                //If there is no instruction cached, try and pull one from the mailbox, otherwise request a new one
-                if (!this.instructionCache.containsKey(pid)) {
-                    Message message = this.mailbox.get(String.valueOf(pid));
-                    if (message == null) {
-                        this.mailbox.put(String.valueOf(pid), Mailbox.MMU, "read|" + pid + "|" + this.process.pc + "|true");
-                        this.block();
+                //If there is no instruction fetched, take it from the prefetch buffer or pull one from the mailbox,
+                //otherwise request a new one
+                if (this.process.getInstruction() == null) {
+                    if (this.process.isPrefetched(this.process.pc)) {
+                        this.process.setInstruction(this.process.getProgram().decode(this.process.pc, this.process.getPrefetched(this.process.pc)));
                     }
                     else {
-                        this.instructionCache.put(pid, message.getCommand()[1]);
+                        Message message = this.mailbox.get(this.process.getLabel());
+                        if (message == null) {
+                            this.block();
+                            this.fetch(pid);
+                        }
+                        else if (message.getCommand() == Command.CODE) {
+                            this.process.setPrefetch(message.getValue(), (Object[]) message.getData());
+                            this.process.setInstruction(this.process.getProgram().decode(this.process.pc, this.process.getPrefetched(this.process.pc)));
+                        }
+                        else {
+                            //Code blocks hold a decoded instruction, anything else is decoded from its text
+                            Object block = message.getType() == CellType.CODE ? message.getData() : Memory.format(message.getType(), message.getNumber(), message.getData());
+                            this.process.setInstruction(this.process.getProgram().decode(this.process.pc, block));
+                        }
                     }
                 }
 
                 //Check that the process wasn't just blocked
-                if (this.process != null) {
+                if (!this.blocked) {
                     //Load requested data into buffer
                     boolean done = false;
                     while(!done) {
-                        Message message = this.mailbox.get(String.valueOf(pid));
+                        Message message = this.mailbox.get(this.process.getLabel());
                         if (message != null) {
-                            String[] command = message.getCommand();
-                            if (command[0].equals("data")) {
-                                this.dataBuffer.add(command[1]);
-                                if (command[2].equals("true")) {
+                            if (message.getCommand() == Command.DATA) {
+                                this.dataBuffer.add(message);
+                                if (this.process.getCache() != null) {
+                                    this.process.getCache().put(message.getValue(), message);
+                                }
+                                if (message.getFlag()) {
                                     done = true;
                                 }
                             }
@@ -159,37 +199,53 @@ public class CPU implements Runnable {
                         }
                     }
 
-                    //Split label from instruction
-                    String instruction;
-                    String[] split = this.instructionCache.get(pid).split(":", 2);
-                    try {
-                        //Will throw exception if there is no label on this line
-                        instruction = split[1];
-                    }
-                    catch (ArrayIndexOutOfBoundsException e) {
-                        instruction = split[0];
-                    }
-
                     //If data was provided execute instruction with it. If not, execution will determine the data needed
+                    Instruction instruction = this.process.getInstruction();
                     if (this.dataBuffer.isEmpty()) {
                         this.exec(instruction);
-                        this.log("[" + pid + "] " + instruction);
+                        this.log("[" + pid + "] " + instruction.getText());
                     }
                     else {
-                        this.execData(instruction, this.dataBuffer);
-                        this.log("[" + pid + "/DATA] " + instruction);
+                        this.execData(instruction, this.dataBuffer, false);
+                        this.log("[" + pid + "/DATA] " + instruction.getText());
                     }
                 }
+                this.process.release();
             }
+        }
+    }
 
-            //Wait for next clock cycle
-            try {
-                Thread.sleep((long) ((1/clockSpeed) * 1000));
-            }
-            catch (InterruptedException e) {
-                return;
-            }
+    /**
+     * Get the process the scheduler is running, unless it has been blocked and the scheduler hasn't caught up yet
+     * @return Process to execute, or null if there is none
+     */
+    private PCB getRunnable() {
+        PCB process = this.scheduler.getRunning(this.core);
+        if (process != null && process.isBlocked()) {
+            return null;
         }
+        return process;
+    }
+
+    /**
+     * Acquire the process the scheduler is running on this core for one cycle.<br>
+     * Fails if another core is still finishing a cycle of it
+     * @return Process to execute, or null if there is none
+     */
+    private PCB acquire() {
+        PCB process = this.getRunnable();
+        if (process == null || !process.acquire()) {
+            return null;
+        }
+        //Check the scheduler didn't switch away from the process before it was acquired
+        if (this.getRunnable() != process) {
+            process.release();
+            return null;
+        }
+        if (this.cacheSize > 0 && process.getCache() == null) {
+            process.setCache(new DataCache(this.cacheSize));
+        }
+        return process;
     }
 
     /**
@@ -202,77 +258,180 @@ public class CPU implements Runnable {
     }
 
     /**
-     * Block the current process
+     * Block the current process.<br>
+     * Must be called before sending the request that will unblock the process, so the scheduler sees the block first
      */
     private void block() {
         this.scheduler.block(this.process);
-        this.process = null;
+        this.blocked = true;
     }
 
     /**
      * Drop the current process
      */
     private void drop() {
-        this.mailbox.put(Mailbox.CPU, Mailbox.SCHEDULER, "drop|" + this.process.getPid());
-        this.block();
+        if (!this.blocked) {
+            this.block();
+        }
+        this.mailbox.put(this.label, Mailbox.SCHEDULER, Command.DROP, this.process.getPid());
+    }
+
+    /**
+     * Request the instruction at the PC from memory, reading ahead as far as the prefetch depth and the end of the code
+     * allow
+     * @param pid PID of the current process
+     */
+    private void fetch(int pid) {
+        int blocks = Math.min(this.prefetch, this.process.getCodeLength() - this.process.pc);
+        if (blocks > 1) {
+            this.mailbox.put(this.process.getLabel(), Mailbox.MMU, Command.READ_RANGE, pid, this.process.pc, CellType.EMPTY, blocks, null, true);
+        }
+        else {
+            this.mailbox.put(this.process.getLabel(), Mailbox.MMU, Command.READ, pid, this.process.pc, true);
+        }
     }
 
     /**
      * Go to the next instruction
      */
     private void next() {
-        this.instructionCache.remove(this.process.getPid());
+        this.instructions++;
+        this.process.setInstruction(null);
         this.process.pc++;
     }
 
+    /**
+     * Jump to an instruction
+     * @param target PC to jump to
+     */
+    private void jump(int target) {
+        this.instructions++;
+        this.process.clearPrefetch();
+        this.process.setInstruction(null);
+        this.process.pc = target;
+    }
+
+    /**
+     * Check if a variable has been defined by the current process
+     * @param slot Slot of the variable in the variable table
+     * @return True if defined
+     */
+    private boolean isVar(int slot) {
+        return this.process.getVariable(slot) >= 0;
+    }
+
+    /**
+     * Get the virtual address of a variable
+     * @param slot Slot of the variable in the variable table
+     * @return Virtual address
+     * @throws IllegalArgumentException If the variable has not been defined
+     */
+    private int getVar(int slot) {
+        int address = this.process.getVariable(slot);
+        if (address < 0) {
+            throw new IllegalArgumentException("Variable not defined");
+        }
+        return address;
+    }
+
     /**
      * Read a variable from memory
-     * @param var Variable
+     * @param var Slot of the variable in the variable table
      * @param last True if this is the last in a series of read operations
      */
-    private void readVar(String var, boolean last) {
-        if (this.varCache.containsKey(this.process.getPid())) {
-            if (this.varCache.get(this.process.getPid()).containsKey(var)) {
-                if (last) {
-                    this.mailbox.put(String.valueOf(this.process.getPid()), Mailbox.MMU, "read|" + this.process.getPid() + "|" + this.varCache.get(this.process.getPid()).get(var) + "|true");
-                }
-                else {
-                    this.mailbox.put(String.valueOf(this.process.getPid()), Mailbox.MMU, "read|" + this.process.getPid() + "|" + this.varCache.get(this.process.getPid()).get(var) + "|false");
-                }
-            }
-            else {
-                throw new IllegalArgumentException("Variable not defined");
-            }
+    private void readVar(int var, boolean last) {
+        this.mailbox.put(this.process.getLabel(), Mailbox.MMU, Command.READ, this.process.getPid(), this.getVar(var), last);
+    }
+
+    /**
+     * Read variables from the data cache, only if every one of them is cached
+     * @param vars Slots of the variables in the variable table
+     * @return True if every value was cached and has been added to the data buffer, in order
+     */
+    private boolean readCached(int... vars) {
+        DataCache cache = this.process.getCache();
+        if (cache == null) {
+            return false;
         }
-        else {
-            throw new IllegalArgumentException("Variable not defined");
+        for (int var : vars) {
+            Message value = cache.get(this.getVar(var));
+            if (value == null) {
+                //Every variable is read from memory instead, so none of them count as hits
+                this.dataBuffer.clear();
+                this.cacheMisses += vars.length;
+                return false;
+            }
+            this.dataBuffer.add(value);
         }
+        this.cacheHits += vars.length;
+        return true;
     }
 
     /**
      * Write to the memory location of a variable
-     * @param var Variable
-     * @param data Data to write
+     * @param var Slot of the variable in the variable table
+     * @param type Type of value to write
+     * @param number Numeric value to write
+     * @param data Object value to write
      * @param last True if this is the last in a series of write operations
-     * @param <T> Type of the data being written, will be converted to a String
      */
-    private <T> void writeVar(String var, T data, boolean last) {
-        if (this.varCache.containsKey(this.process.getPid())) {
-            if (this.varCache.get(this.process.getPid()).containsKey(var)) {
-                if (last) {
-                    this.mailbox.put(Mailbox.CPU, Mailbox.MMU, "write|" + this.process.getPid() + "|" + this.varCache.get(this.process.getPid()).get(var) +  "|" + data + "|true");
-                }
-                else {
-                    this.mailbox.put(Mailbox.CPU, Mailbox.MMU, "write|" + this.process.getPid() + "|" + this.varCache.get(this.process.getPid()).get(var) +  "|" + data + "|false");
-                }
-            }
-            else {
-                throw new IllegalArgumentException("Variable not defined");
-            }
+    private void writeVar(int var, CellType type, double number, Object data, boolean last) {
+        int address = this.getVar(var);
+        Message message = new Message(this.label, Mailbox.MMU, Command.WRITE, this.process.getPid(), address, type, number, data, last);
+        //Code that has been read ahead is out of date if the process writes over it
+        if (address < this.process.getCodeLength()) {
+            this.process.clearPrefetch();
         }
-        else {
-            throw new IllegalArgumentException("Variable not defined");
+        //Write through the cache, so memory is always up to date
+        if (this.process.getCache() != null) {
+            this.process.getCache().put(address, message);
+        }
+        this.mailbox.put(message);
+    }
+
+    /**
+     * Write a number to the memory location of a variable
+     * @param var Slot of the variable in the variable table
+     * @param number Number to write
+     * @param last True if this is the last in a series of write operations
+     */
+    private void writeVar(int var, double number, boolean last) {
+        this.writeVar(var, CellType.NUMBER, number, null, last);
+    }
+
+    /**
+     * Write the literal value given by an instruction to the memory location of its variable
+     * @param instruction Instruction
+     */
+    private void writeLiteral(Instruction instruction) {
+        this.writeVar(instruction.getVar(), instruction.getLiteralType(), instruction.getLiteralNumber(), instruction.getLiteral(), true);
+    }
+
+    /**
+     * Check if a value read from memory is equal to another value
+     * @param var Value read from memory
+     * @param type Type of the other value
+     * @param number Numeric value of the other value
+     * @param object Object value of the other value
+     * @return True if both are numbers with the same value, or neither are and their text matches
+     */
+    private boolean equal(Message var, CellType type, double number, Object object) {
+        if (Memory.isNumber(var.getType()) && Memory.isNumber(type)) {
+            return Double.compare(var.getNumber(), number) == 0;
         }
+        return var.asText().equals(String.valueOf(Memory.format(type, number, object)));
+    }
+
+    /**
+     * Evaluate a math expression using the values in the operand buffer
+     * @param expression Expression to evaluate
+     * @return Result
+     */
+    private double evaluate(Expression expression) {
+        if (this.stack.length < expression.getDepth()) {
+            this.stack = new double[expression.getDepth()];
+        }
+        return expression.evaluate(this.operands, this.stack);
     }
 
     /**
@@ -280,29 +439,27 @@ public class CPU implements Runnable {
      * This method takes no data, so this is either for instructions that don't need data, or for determining what data is required.
      * @param instruction Instruction to execute
      */
-    private void exec(String instruction) {
+    private void exec(Instruction instruction) {
         try {
             int pid = this.process.getPid();
-            String[] tokens = instruction.split("\\s");
-            switch (tokens[0]) {
+            switch (instruction.getOpcode()) {
                 //Empty line
-                case "null": {
+                case NULL: {
                     this.next();
                 }
                 break;
 
                 //var [name] [address] {value}
-                case "var": {
-                    //Create a varCache entry for this process
-                    if (!this.varCache.containsKey(pid)) {
-                        this.varCache.put(pid, new HashMap<>());
+                case VAR: {
+                    if (instruction.getVar() < 0) {
+                        throw new IllegalArgumentException("Variable not defined");
                     }
-                    this.varCache.get(pid).put(tokens[1], this.getRealAddress(Integer.parseInt(tokens[2])));
+                    this.process.setVariable(instruction.getVar(), this.getRealAddress(instruction.getNumber()));
                     //Optionally assign a value to the variable
-                    if (tokens.length == 4) {
-                        this.writeVar(tokens[1], tokens[3], true);
-                        this.next();
+                    if (instruction.getLiteral() != null) {
                         this.block();
+                        this.writeLiteral(instruction);
+                        this.next();
                     }
                     else {
                         this.next();
@@ -311,404 +468,292 @@ public class CPU implements Runnable {
                 break;
 
                 //alloc [blocks]
-                case "alloc": {
-                    this.mailbox.put(Mailbox.CPU, Mailbox.MMU, "allocate|" + pid + "|" + tokens[1] + "|false");
-                    this.next();
+                case ALLOC: {
                     this.block();
+                    this.mailbox.put(this.label, Mailbox.MMU, Command.ALLOCATE, pid, instruction.getNumber(), false);
+                    this.next();
                 }
                 break;
 
                 //free [blocks]
-                case "free": {
-                    this.mailbox.put(Mailbox.CPU, Mailbox.MMU, "free|" + pid + "|" + tokens[1] + "|false");
+                case FREE: {
+                    //Freed addresses must not be readable from the cache or prefetch buffer
+                    this.process.invalidateCache();
+                    this.process.clearPrefetch();
+                    this.mailbox.put(this.label, Mailbox.MMU, Command.FREE, pid, instruction.getNumber(), false);
                     this.next();
                 }
                 break;
 
                 //exit
-                case "exit": {
+                case EXIT: {
                     this.drop();
                 }
                 break;
 
                 //jump [label]
-                case "jump": {
-                    if (this.labelCache.containsKey(pid)) {
-                        if (this.labelCache.get(pid).containsKey(tokens[1])) {
-                            this.process.pc = this.labelCache.get(pid).get(tokens[1]);
-                            this.instructionCache.remove(pid);
-                        }
-                        else {
-                            throw new IllegalArgumentException("Label not defined");
-                        }
-                    }
-                    else {
+                case JUMP: {
+                    if (instruction.getTarget() < 0) {
                         throw new IllegalArgumentException("Label not defined");
                     }
+                    this.jump(instruction.getTarget());
                 }
                 break;
 
                 //jumpif [var1] [comparator] [var2/value] [label]
-                case "jumpif": {
-                    if (this.labelCache.containsKey(pid)) {
-                        if (this.labelCache.get(pid).containsKey(tokens[4])) {
-                            //Check if var2 is value
-                            if (this.varCache.get(pid).containsKey(tokens[3])) {
-                                this.readVar(tokens[1], false);
-                                this.readVar(tokens[3], true);
-                            }
-                            else {
-                                this.readVar(tokens[1], true);
-                            }
-                            this.block();
+                case JUMPIF: {
+                    if (instruction.getTarget() < 0) {
+                        throw new IllegalArgumentException("Label not defined");
+                    }
+                    //Check if var2 is value
+                    boolean operand = this.isVar(instruction.getOperand());
+                    //Execute straight away if the data is cached, otherwise request it
+                    if (operand ? this.readCached(instruction.getVar(), instruction.getOperand()) : this.readCached(instruction.getVar())) {
+                        this.execData(instruction, this.dataBuffer, true);
+                    }
+                    else {
+                        this.block();
+                        if (operand) {
+                            this.readVar(instruction.getVar(), false);
+                            this.readVar(instruction.getOperand(), true);
                         }
                         else {
-                            throw new IllegalArgumentException("Label not defined");
+                            this.readVar(instruction.getVar(), true);
                         }
                     }
-                    else {
-                        throw new IllegalArgumentException("Label not defined");
-                    }
                 }
                 break;
 
                 //set [var] [var/value]
-                case "set": {
+                case SET: {
                     //Check if setting to a variable
-                    if (this.varCache.get(pid).containsKey(tokens[2])) {
-                        this.readVar(tokens[2], true);
+                    if (this.isVar(instruction.getOperand())) {
+                        if (this.readCached(instruction.getOperand())) {
+                            this.execData(instruction, this.dataBuffer, true);
+                        }
+                        else {
+                            this.block();
+                            this.readVar(instruction.getOperand(), true);
+                        }
                     }
                     else {
-                        this.writeVar(tokens[1], tokens[2], true);
+                        this.block();
+                        this.writeLiteral(instruction);
                         this.next();
                     }
-                    this.block();
                 }
                 break;
 
                 //out [var]
-                case "out":
+                case OUT:
                 //inc [var]
-                case "inc":
+                case INC:
                 //dec [var]
-                case "dec": {
-                    this.readVar(tokens[1], true);
-                    this.block();
+                case DEC: {
+                    if (this.readCached(instruction.getVar())) {
+                        this.execData(instruction, this.dataBuffer, true);
+                    }
+                    else {
+                        this.block();
+                        this.readVar(instruction.getVar(), true);
+                    }
                 }
                 break;
 
                 //math [expression]
-                case "math": {
-                    this.mathVars = new ArrayList<>();
-
-                    //Merge tokens back into one string
-                    StringBuilder builder = new StringBuilder();
-                    for (int i = 1; i < tokens.length; i++) {
-                        builder.append(tokens[i]);
+                case MATH: {
+                    //Check the target and every variable read have been defined
+                    this.getVar(instruction.getVar());
+                    int[] vars = instruction.getExpression().getVariables();
+                    for (int var : vars) {
+                        this.getVar(var);
                     }
-                    String expression = builder.toString().replaceAll("\\s", "");
-
-                    //Split at brackets and operators
-                    String[] split = expression.split("[()+\\-*/%=]");
-
-                    //Find variables, start at index 1 as index 0 will be the variable to output to
-                    for (int i = 1; i < split.length; i++) {
-                        if (this.varCache.get(pid).containsKey(split[i])) {
-                            this.mathVars.add(split[i]);
-                        }
+                    //Evaluate straight away if no data is needed or it is all cached, otherwise request it
+                    if (vars.length == 0 || this.readCached(vars)) {
+                        this.execData(instruction, this.dataBuffer, this.process.getCache() != null);
                     }
-
-                    //Request data
-                    for (int i = 0; i < this.mathVars.size(); i++) {
-                        this.readVar(this.mathVars.get(i), i == this.mathVars.size() - 1);
+                    else {
+                        this.block();
+                        for (int i = 0; i < vars.length; i++) {
+                            this.readVar(vars[i], i == vars.length - 1);
+                        }
                     }
-                    this.block();
                 }
                 break;
 
+                //Instruction could not be decoded
                 default: {
-                    throw new IllegalArgumentException("Invalid instruction");
+                    throw instruction.getError();
                 }
             }
         }
         catch (Exception e) {
             //Output exception caused by process and drop it
             e.printStackTrace();
-            this.output("[CPU/ERROR] " + e.getClass().getSimpleName() + " in PID " + this.process.getPid() + " at '" + instruction + "': " + e.getMessage());
+            this.output("[CPU/ERROR] " + e.getClass().getSimpleName() + " in PID " + this.process.getPid() + " at '" + instruction.getText() + "': " + e.getMessage());
             this.drop();
         }
     }
 
     /**
      * Execute an instruction with data.<br>
-     * The code to run once an instruction has requested the required data goes here.
+     * The code to run once an instruction has requested the required data goes here. If the data all came from the data
+     * cache, the instruction finishes without blocking. Any write it makes is still sent to the MMU, which handles each
+     * process' requests in order, so a later read from memory always sees it.
      * @param instruction Instruction to execute
      * @param data Data to use in the execution
+     * @param hit True if the data was read from the data cache rather than requested from memory
      */
-    private void execData(String instruction, Deque<String> data) {
+    private void execData(Instruction instruction, Deque<Message> data, boolean hit) {
         try {
             int pid = this.process.getPid();
-            String[] tokens = instruction.split("\\s");
-            switch (tokens[0]) {
+            switch (instruction.getOpcode()) {
                 //out [var]
-                case "out": {
-                    //Check output dir exists
-                    File dir = new File("output");
-                    if (!dir.exists()) {
-                        Files.createDirectory(dir.toPath());
-                    }
-                    //Create a new output writer if needed
-                    if (!this.outputs.containsKey(pid)) {
-                        File file;
-                        String[] path = this.process.getCodePath().toString().split("[/\\\\]");
-                        String name = path[path.length - 1];
-                        if (!Files.exists(Path.of("output", name))) {
-                            file = new File("output", name);
+                case OUT: {
+                    //Cores can create output files at the same time, so only one may pick a file name at once
+                    synchronized (CPU.class) {
+                        //Check output dir exists
+                        File dir = new File("output");
+                        if (!dir.exists()) {
+                            Files.createDirectory(dir.toPath());
                         }
-                        else {
-                            int count = 1;
-                            while (Files.exists(Path.of("output", name.split("\\.")[0] + "(" + count + ").txt"))) {
-                                count++;
+                        //Create a new output writer if needed
+                        if (this.process.getOutput() == null) {
+                            File file;
+                            String[] path = this.process.getCodePath().toString().split("[/\\\\]");
+                            String name = path[path.length - 1];
+                            if (!Files.exists(Path.of("output", name))) {
+                                file = new File("output", name);
                             }
-                            file = new File("output", name.split("\\.")[0] + "(" + count + ").txt");
+                            else {
+                                int count = 1;
+                                while (Files.exists(Path.of("output", name.split("\\.")[0] + "(" + count + ").txt"))) {
+                                    count++;
+                                }
+                                file = new File("output", name.split("\\.")[0] + "(" + count + ").txt");
+                            }
+                            this.process.setOutput(new BufferedWriter(new FileWriter(file)));
                         }
-                        this.outputs.put(pid, new BufferedWriter(new FileWriter(file)));
                     }
 
                     //Output var to console and to file
-                    String out = Objects.requireNonNull(data.poll());
+                    String out = Objects.requireNonNull(data.poll()).asText();
                     this.output("[" + pid + "] " + out);
-                    this.outputs.get(pid).write(out);
-                    this.outputs.get(pid).newLine();
+                    this.process.getOutput().write(out);
+                    this.process.getOutput().newLine();
                     this.next();
                 }
                 break;
 
                 //inc [var]
-                case "inc": {
-                    this.writeVar(tokens[1], Double.parseDouble(Objects.requireNonNull(data.poll())) + 1, true);
+                case INC: {
+                    double value = Objects.requireNonNull(data.poll()).asNumber() + 1;
+                    if (!hit) {
+                        this.block();
+                    }
+                    this.writeVar(instruction.getVar(), value, !hit);
                     this.next();
-                    this.block();
                 }
                 break;
 
                 //dec [var]
-                case "dec": {
-                    this.writeVar(tokens[1], Double.parseDouble(Objects.requireNonNull(data.poll())) - 1, true);
+                case DEC: {
+                    double value = Objects.requireNonNull(data.poll()).asNumber() - 1;
+                    if (!hit) {
+                        this.block();
+                    }
+                    this.writeVar(instruction.getVar(), value, !hit);
                     this.next();
-                    this.block();
                 }
                 break;
 
                 //set [var] [var]
-                case "set": {
-                    this.writeVar(tokens[1], data.poll(), true);
+                case SET: {
+                    Message value = Objects.requireNonNull(data.poll());
+                    if (!hit) {
+                        this.block();
+                    }
+                    this.writeVar(instruction.getVar(), value.getType(), value.getNumber(), value.getData(), !hit);
                     this.next();
-                    this.block();
                 }
                 break;
 
                 //jumpif [var1] [comparator] [var2] [label]
-                case "jumpif": {
+                case JUMPIF: {
+                    Message var1 = Objects.requireNonNull(data.poll());
                     //Check if var2 is value
-                    String var1;
-                    String var2;
-                    if (this.varCache.get(pid).containsKey(tokens[3])) {
-                        var1 = Objects.requireNonNull(data.poll());
-                        var2 = Objects.requireNonNull(data.poll());
+                    CellType type;
+                    double number;
+                    Object object;
+                    if (this.isVar(instruction.getOperand())) {
+                        Message var2 = Objects.requireNonNull(data.poll());
+                        type = var2.getType();
+                        number = var2.getNumber();
+                        object = var2.getData();
                     }
                     else {
-                        var1 = Objects.requireNonNull(data.poll());
-                        var2 = tokens[3];
-                    }
-                    //If the variable are numbers, format them as doubles
-                    try {
-                        var1 = String.valueOf(Double.parseDouble(var1));
-                    }
-                    catch (Exception ignored) {}
-                    try {
-                        var2 = String.valueOf(Double.parseDouble(var2));
+                        type = instruction.getLiteralType();
+                        number = instruction.getLiteralNumber();
+                        object = instruction.getLiteral();
                     }
-                    catch (Exception ignored) {}
 
-                    //Compare
-                    switch (tokens[2]) {
-                        case "==": {
-                            if (var1.equals(var2)) {
-                                this.instructionCache.remove(pid);
-                                this.process.pc = this.labelCache.get(pid).get(tokens[4]);
-                            }
-                            else {
-                                this.next();
-                            }
-                        }
-                        break;
+                    //Compare, numbers are compared by value and anything else by text
+                    boolean result;
+                    switch (instruction.getComparison()) {
+                        case EQUAL:
+                            result = this.equal(var1, type, number, object);
+                            break;
 
-                        case "!=": {
-                            if (!var1.equals(var2)) {
-                                this.instructionCache.remove(pid);
-                                this.process.pc = this.labelCache.get(pid).get(tokens[4]);
-                            }
-                            else {
-                                this.next();
-                            }
-                        }
-                        break;
+                        case NOT_EQUAL:
+                            result = !this.equal(var1, type, number, object);
+                            break;
 
-                        case ">": {
-                            if (Double.parseDouble(var1) > Double.parseDouble(var2)) {
-                                this.instructionCache.remove(pid);
-                                this.process.pc = this.labelCache.get(pid).get(tokens[4]);
-                            }
-                            else {
-                                this.next();
-                            }
-                        }
-                        break;
+                        case GREATER:
+                            result = var1.asNumber() > Memory.toNumber(type, number, object);
+                            break;
 
-                        case "<": {
-                            if (Double.parseDouble(var1) < Double.parseDouble(var2)) {
-                                this.instructionCache.remove(pid);
-                                this.process.pc = this.labelCache.get(pid).get(tokens[4]);
-                            }
-                            else {
-                                this.next();
-                            }
-                        }
-                        break;
+                        case LESS:
+                            result = var1.asNumber() < Memory.toNumber(type, number, object);
+                            break;
 
-                        case ">=": {
-                            if (Double.parseDouble(var1) >= Double.parseDouble(var2)) {
-                                this.instructionCache.remove(pid);
-                                this.process.pc = this.labelCache.get(pid).get(tokens[4]);
-                            }
-                            else {
-                                this.next();
-                            }
-                        }
-                        break;
+                        case GREATER_EQUAL:
+                            result = var1.asNumber() >= Memory.toNumber(type, number, object);
+                            break;
 
-                        case "<=": {
-                            if (Double.parseDouble(var1) <= Double.parseDouble(var2)) {
-                                this.instructionCache.remove(pid);
-                                this.process.pc = this.labelCache.get(pid).get(tokens[4]);
-                            }
-                            else {
-                                this.next();
-                            }
-                        }
-                        break;
+                        case LESS_EQUAL:
+                            result = var1.asNumber() <= Memory.toNumber(type, number, object);
+                            break;
 
                         default: {
-                            throw new IllegalArgumentException("Invalid comparator: " + tokens[2]);
+                            throw new IllegalArgumentException("Invalid comparator: " + instruction.getComparison());
                         }
                     }
+                    if (result) {
+                        this.jump(instruction.getTarget());
+                    }
+                    else {
+                        this.next();
+                    }
                 }
                 break;
 
                 //math [expression]
-                case "math": {
-                    //Merge tokens back into one string
-                    StringBuilder builder = new StringBuilder();
-                    for (int i = 1; i < tokens.length; i++) {
-                        builder.append(tokens[i]);
-                    }
-                    String expression = builder.toString().replaceAll("\\s", "");
-                    String target;
-                    {
-                        String[] split = expression.split("=");
-                        target = split[0];
-                        expression = split[1];
-                    }
-
-                    //Sub in data
-                    for (String var : this.mathVars) {
-                        expression = expression.replaceAll(var, Objects.requireNonNull(this.dataBuffer.poll()));
-                    }
-
-                    //Add brackets to list in order they must be evaluated in - inner brackets followed by outer brackets
-                    List<String> operations = new ArrayList<>();
-                    if (expression.contains("(")) {
-                        boolean done = false;
-                        while (!done) {
-                            //Find the first closing bracket
-                            int close = expression.indexOf(")");
-                            int open;
-                            boolean found = false;
-                            int i = 1;
-                            //Go backwards to find the opening bracket
-                            while (!found) {
-                                if (expression.substring(close - i, (close - i) + 1).equals("(")) {
-                                    open = close - i;
-                                    //Add contents of brackets to list
-                                    operations.add(expression.substring(open + 1, close));
-                                    //Replace bracket with b:n where n is the index of the bracket in the list
-                                    expression = expression.replace(expression.substring(open, close + 1), "b:"+ (operations.size() - 1));
-                                    found = true;
-                                }
-                                i++;
-                            }
-                            //If there are no more brackets, break loop
-                            if (!expression.contains("(")) {
-                                done = true;
-                            }
-                        }
+                case MATH: {
+                    //Load the values that were read, in the order the expression expects them
+                    int count = instruction.getExpression().getVariables().length;
+                    if (this.operands.length < count) {
+                        this.operands = new double[count];
                     }
-
-                    //Add expression as final operation
-                    operations.add(expression);
-
-                    //Evaluate
-                    for (int i = 0; i < operations.size(); i++) {
-                        //Extract operators
-                        Deque<String> operators = new ArrayDeque<>();
-                        for (String s : operations.get(i).split("[^+\\-*/%]")) {
-                            if (!s.equals("")) {
-                                operators.add(s);
-                            }
-                        }
-
-                        //Split at operators
-                        String[] split = operations.get(i).split("[+\\-*/%]");
-                        //Sub in previous operations
-                        for (int j = 0; j < split.length; j++) {
-                            if (split[j].matches("b:[0-9]+")) {
-                                split[j] = operations.get(Integer.parseInt(split[j].split(":")[1]));
-                            }
-                        }
-
-                        //Calculate result
-                        double result = Double.parseDouble(split[0]);
-                        for (int j = 1; j < split.length; j++) {
-                            switch (Objects.requireNonNull(operators.poll())) {
-                                case "+":
-                                    result = result + Double.parseDouble(split[j]);
-                                    break;
-
-                                case "-":
-                                    result = result - Double.parseDouble(split[j]);
-                                    break;
-
-                                case "*":
-                                    result = result * Double.parseDouble(split[j]);
-                                    break;
-
-                                case "/":
-                                    result = result / Double.parseDouble(split[j]);
-                                    break;
-
-                                case "%":
-                                    result = result % Double.parseDouble(split[j]);
-                                    break;
-                            }
-                        }
-                        operations.set(i, String.valueOf(result));
+                    for (int i = 0; i < count; i++) {
+                        this.operands[i] = Objects.requireNonNull(data.poll()).asNumber();
                     }
 
                     //Write result to target
-                    this.writeVar(target, operations.get(operations.size() - 1), true);
+                    if (!hit) {
+                        this.block();
+                    }
+                    this.writeVar(instruction.getVar(), this.evaluate(instruction.getExpression()), !hit);
                     this.next();
-                    this.block();
                 }
                 break;
             }
@@ -716,7 +761,7 @@ public class CPU implements Runnable {
         catch (Exception e) {
             //Output exception caused by process and drop it
             e.printStackTrace();
-            this.output("[CPU/ERROR] " + e.getClass().getSimpleName() + " in PID " + this.process.getPid() + " at '" + instruction + "': " + e.getMessage());
+            this.output("[CPU/ERROR] " + e.getClass().getSimpleName() + " in PID " + this.process.getPid() + " at '" + instruction.getText() + "': " + e.getMessage());
             this.drop();
         }
     }
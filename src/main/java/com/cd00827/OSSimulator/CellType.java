@@ -0,0 +1,18 @@
+package com.cd00827.OSSimulator;
+
+/**
+ * Types of value a block of memory can hold
+ * @author cd00827
+ */
+public enum CellType {
+    //Nothing has been written to the block
+    EMPTY,
+    //Number calculated by the CPU
+    NUMBER,
+    //Text that is not a number
+    TEXT,
+    //Number written as text, the text is kept so the value is output the way it was written
+    NUMERIC_TEXT,
+    //Decoded instruction
+    CODE
+}
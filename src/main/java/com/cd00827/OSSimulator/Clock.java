@@ -0,0 +1,88 @@
+package com.cd00827.OSSimulator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces a subsystem to its clock speed.<br>
+ * Each cycle may start no earlier than one clock period after the previous cycle started, so time spent executing a
+ * cycle or waiting for work counts towards the period rather than being added to it.<br>
+ * A clock created with a timeline runs in virtual time instead, see Timeline.
+ * @author cd00827
+ */
+public class Clock {
+    private final long period;
+    private final Timeline timeline;
+    private long next;
+    //Virtual time state, only used when running on a timeline and guarded by the timeline
+    long time;
+    boolean idle;
+
+    /**
+     * Constructor for a clock that runs in real time
+     * @param clockSpeed Number of cycles per second
+     */
+    public Clock(double clockSpeed) {
+        this(clockSpeed, null);
+    }
+
+    /**
+     * Constructor
+     * @param clockSpeed Number of cycles per second
+     * @param timeline Timeline to run in virtual time on, or null to run in real time
+     */
+    public Clock(double clockSpeed, Timeline timeline) {
+        this.period = (long) (TimeUnit.SECONDS.toNanos(1) / clockSpeed);
+        this.timeline = timeline;
+        this.next = System.nanoTime();
+        if (timeline != null) {
+            timeline.register(this);
+        }
+    }
+
+    /**
+     * Get the length of a cycle
+     * @return Period in nanoseconds
+     */
+    public long getPeriod() {
+        return this.period;
+    }
+
+    /**
+     * Wait until the next cycle may start, and mark it as started
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public void await() throws InterruptedException {
+        if (this.timeline != null) {
+            try {
+                this.timeline.await(this);
+            }
+            catch (InterruptedException e) {
+                this.timeline.unregister(this);
+                throw e;
+            }
+            return;
+        }
+        long now = System.nanoTime();
+        while (now < this.next) {
+            //Thread.sleep only has millisecond precision, so park for the exact time remaining instead
+            LockSupport.parkNanos(this.next - now);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            now = System.nanoTime();
+        }
+        this.next = now + this.period;
+    }
+
+    /**
+     * Mark this clock as waiting for work.<br>
+     * Must be called before waiting for a message. In virtual time, an idle clock doesn't hold back the others on its
+     * timeline, and resumes from the current time at its next await. Does nothing in real time.
+     */
+    public void idle() {
+        if (this.timeline != null) {
+            this.timeline.idle(this);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.cd00827.OSSimulator;
+
+import java.util.function.IntPredicate;
+
+/**
+ * CLOCK page replacement.<br>
+ * A hand sweeps round the frames. Frames that have been accessed since the hand last passed have their reference bit
+ * cleared and are skipped, and the first frame found with its bit clear is evicted.
+ * @author cd00827
+ */
+public class ClockPolicy extends ReplacementPolicy {
+    private final boolean[] referenced;
+    private int hand;
+
+    /**
+     * Constructor
+     * @param frames Number of frames of physical memory
+     */
+    public ClockPolicy(int frames) {
+        this.referenced = new boolean[frames];
+        this.hand = 0;
+    }
+
+    /**
+     * Record that a page has been loaded into a frame
+     * @param frame Frame number
+     */
+    @Override
+    public void loaded(int frame) {
+        this.referenced[frame] = true;
+    }
+
+    /**
+     * Record that a frame has been read or written
+     * @param frame Frame number
+     */
+    @Override
+    public void accessed(int frame) {
+        this.referenced[frame] = true;
+    }
+
+    /**
+     * Choose a frame to evict
+     * @param candidate Test for the frames that may be evicted
+     * @return Frame number, or -1 if no frame passes the test
+     */
+    @Override
+    protected int choose(IntPredicate candidate) {
+        //Two sweeps are enough, the first clears every reference bit it passes
+        for (int i = 0; i < 2 * this.referenced.length; i++) {
+            int frame = this.hand;
+            this.hand = (this.hand + 1) % this.referenced.length;
+            if (candidate.test(frame)) {
+                if (!this.referenced[frame]) {
+                    return frame;
+                }
+                this.referenced[frame] = false;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Choose a frame to evict out of a list of frames
+     * @param frames Frames that may be evicted
+     * @param count Number of frames in the list
+     * @return Frame number, or -1 if the list is empty
+     */
+    @Override
+    protected int choose(int[] frames, int count) {
+        //Gives the same result as sweeping. The hand stops at the nearest frame with its bit clear, clearing the bits of
+        //the frames it passes, or if every bit is set, clears them all and stops at the nearest frame on the second sweep
+        int length = this.referenced.length;
+        int nearest = -1;
+        int victim = -1;
+        for (int i = 0; i < count; i++) {
+            int frame = frames[i];
+            if (nearest < 0 || this.distance(frame) < this.distance(nearest)) {
+                nearest = frame;
+            }
+            if (!this.referenced[frame] && (victim < 0 || this.distance(frame) < this.distance(victim))) {
+                victim = frame;
+            }
+        }
+        if (nearest < 0) {
+            return -1;
+        }
+        int reach = victim < 0 ? length : this.distance(victim);
+        for (int i = 0; i < count; i++) {
+            if (this.distance(frames[i]) < reach) {
+                this.referenced[frames[i]] = false;
+            }
+        }
+        if (victim < 0) {
+            victim = nearest;
+        }
+        this.hand = (victim + 1) % length;
+        return victim;
+    }
+
+    /**
+     * Get how far the hand has to move to reach a frame
+     * @param frame Frame number
+     * @return Number of frames between the hand and the frame
+     */
+    private int distance(int frame) {
+        return (frame - this.hand + this.referenced.length) % this.referenced.length;
+    }
+
+    /**
+     * Get the name of this policy
+     * @return Name shown to the user
+     */
+    @Override
+    public String getName() {
+        return "CLOCK";
+    }
+}
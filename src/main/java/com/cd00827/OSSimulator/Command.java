@@ -0,0 +1,46 @@
+package com.cd00827.OSSimulator;
+
+/**
+ * Commands that can be sent between subsystems in a Message
+ * @author cd00827
+ */
+public enum Command {
+    NEW("new"),
+    ALLOCATE("allocate"),
+    ALLOCATED("allocated"),
+    FREE("free"),
+    READ("read"),
+    READ_RANGE("readRange"),
+    WRITE("write"),
+    LOAD_IMAGE("loadImage"),
+    DATA("data"),
+    CODE("code"),
+    SWAP_IN("swapIn"),
+    SWAPPED_IN("swappedIn"),
+    SWAPPED_OUT("swappedOut"),
+    PAGE_READ("pageRead"),
+    PAGE_WRITTEN("pageWritten"),
+    UNBLOCK("unblock"),
+    SKIP("skip"),
+    DROP("drop"),
+    DROPPED("dropped");
+
+    private final String label;
+
+    /**
+     * Constructor
+     * @param label Name of this command as shown in the mailbox log
+     */
+    Command(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Represent this command as a string
+     * @return Name of this command as shown in the mailbox log
+     */
+    @Override
+    public String toString() {
+        return this.label;
+    }
+}
@@ -0,0 +1,48 @@
+package com.cd00827.OSSimulator;
+
+/**
+ * Comparators that can be used by the jumpif instruction
+ * @author cd00827
+ */
+public enum Comparison {
+    EQUAL("=="),
+    NOT_EQUAL("!="),
+    GREATER(">"),
+    LESS("<"),
+    GREATER_EQUAL(">="),
+    LESS_EQUAL("<=");
+
+    private final String symbol;
+
+    /**
+     * Constructor
+     * @param symbol Symbol used for this comparator in programs
+     */
+    Comparison(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * Get the comparator represented by a symbol
+     * @param symbol Symbol used in a program
+     * @return Comparator
+     * @throws IllegalArgumentException If the symbol is not a comparator
+     */
+    public static Comparison of(String symbol) {
+        for (Comparison comparison : values()) {
+            if (comparison.symbol.equals(symbol)) {
+                return comparison;
+            }
+        }
+        throw new IllegalArgumentException("Invalid comparator: " + symbol);
+    }
+
+    /**
+     * Represent this comparator as a string
+     * @return Symbol used for this comparator in programs
+     */
+    @Override
+    public String toString() {
+        return this.symbol;
+    }
+}
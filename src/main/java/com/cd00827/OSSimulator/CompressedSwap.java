@@ -0,0 +1,282 @@
+package com.cd00827.OSSimulator;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed swap held in memory, in front of the swap area.<br>
+ * Pages written back by the MMU are deflated and kept here until the total compressed size goes over the capacity, at
+ * which point the oldest pages are evicted to the swap area. Pages that do not get any smaller are kept as they are.
+ * Paging in a page held here is much cheaper than reading it from the swap file, and most pages compress well as they
+ * are largely empty blocks and repeated lines of code.
+ * @author cd00827
+ */
+public class CompressedSwap {
+    private final long capacity;
+    //Map (pid, page) to its compressed record, in the order they were added
+    private final LinkedHashMap<Long, Entry> entries;
+    private long size;
+    private final Deflater deflater;
+    private final Inflater inflater;
+    //Scratch space for compressing and decompressing records
+    private byte[] compressed;
+    private ByteBuffer record;
+    private long bytesIn;
+    private long bytesOut;
+    private long hits;
+    private long misses;
+    private long compressTime;
+    private long decompressTime;
+
+    /**
+     * A compressed record of a single page
+     */
+    public static class Entry {
+        private final int pid;
+        private final int page;
+        //Length of the record before compression, data is not compressed if it is the same length
+        private final int length;
+        private final byte[] data;
+
+        /**
+         * Constructor
+         * @param pid PID of process the page belongs to
+         * @param page Page number
+         * @param length Length of the record before compression
+         * @param data Compressed record
+         */
+        private Entry(int pid, int page, int length, byte[] data) {
+            this.pid = pid;
+            this.page = page;
+            this.length = length;
+            this.data = data;
+        }
+
+        /**
+         * Get the PID of the process the page belongs to
+         * @return PID
+         */
+        public int getPid() {
+            return this.pid;
+        }
+
+        /**
+         * Get the page number
+         * @return Page number
+         */
+        public int getPage() {
+            return this.page;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param capacity Total size of compressed records to hold, in bytes
+     */
+    public CompressedSwap(long capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>();
+        this.size = 0;
+        //Pages are small and written back often, so favour speed over size
+        this.deflater = new Deflater(Deflater.BEST_SPEED);
+        this.inflater = new Inflater();
+        this.compressed = new byte[256];
+        this.record = ByteBuffer.allocate(256);
+        this.bytesIn = 0;
+        this.bytesOut = 0;
+        this.hits = 0;
+        this.misses = 0;
+        this.compressTime = 0;
+        this.decompressTime = 0;
+    }
+
+    /**
+     * Combine a PID and page number into a key
+     * @param pid PID of process
+     * @param page Page number
+     * @return Key
+     */
+    private static long key(int pid, int page) {
+        return ((long) pid << 32) | (page & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Compress a record and hold it, replacing any record already held for the page.<br>
+     * This may take the compressed swap over its capacity, in which case the caller should evict entries until it is not.
+     * @param pid PID of process the page belongs to
+     * @param page Page number
+     * @param record Record to compress, from its position to its limit
+     */
+    public void put(int pid, int page, ByteBuffer record) {
+        long start = System.nanoTime();
+        int length = record.remaining();
+        int offset = record.arrayOffset() + record.position();
+        if (this.compressed.length < length) {
+            this.compressed = new byte[Math.max(this.compressed.length * 2, length)];
+        }
+        this.deflater.reset();
+        this.deflater.setInput(record.array(), offset, length);
+        this.deflater.finish();
+        int bytes = this.deflater.deflate(this.compressed, 0, length);
+
+        //Keep the record as it is if compressing it did not make it any smaller
+        byte[] data;
+        if (this.deflater.finished() && bytes < length) {
+            data = Arrays.copyOf(this.compressed, bytes);
+        }
+        else {
+            data = Arrays.copyOfRange(record.array(), offset, offset + length);
+        }
+        this.compressTime += System.nanoTime() - start;
+
+        this.remove(pid, page);
+        this.entries.put(key(pid, page), new Entry(pid, page, length, data));
+        this.size += data.length;
+        this.bytesIn += length;
+        this.bytesOut += data.length;
+    }
+
+    /**
+     * Decompress the record held for a page, keeping it held in case the page is evicted again without being modified
+     * @param pid PID of process the page belongs to
+     * @param page Page number
+     * @return The record, ready to be decoded. It is only valid until this compressed swap is next used
+     */
+    public ByteBuffer get(int pid, int page) {
+        this.hits++;
+        return this.decompress(this.entries.get(key(pid, page)));
+    }
+
+    /**
+     * Stop holding the record of a page
+     * @param pid PID of process the page belongs to
+     * @param page Page number
+     */
+    public void remove(int pid, int page) {
+        Entry entry = this.entries.remove(key(pid, page));
+        if (entry != null) {
+            this.size -= entry.data.length;
+        }
+    }
+
+    /**
+     * Check if the records held take up more than the capacity
+     * @return True if entries should be evicted
+     */
+    public boolean isFull() {
+        return this.size > this.capacity && !this.entries.isEmpty();
+    }
+
+    /**
+     * Stop holding the oldest record, so it can be moved to the swap area
+     * @return Oldest entry, to pass to decompress
+     */
+    public Entry evict() {
+        Iterator<Map.Entry<Long, Entry>> iterator = this.entries.entrySet().iterator();
+        Entry entry = iterator.next().getValue();
+        iterator.remove();
+        this.size -= entry.data.length;
+        return entry;
+    }
+
+    /**
+     * Decompress the record of an entry
+     * @param entry Entry
+     * @return The record, ready to be decoded. It is only valid until this compressed swap is next used
+     */
+    public ByteBuffer decompress(Entry entry) {
+        long start = System.nanoTime();
+        if (this.record.capacity() < entry.length) {
+            this.record = ByteBuffer.allocate(Math.max(this.record.capacity() * 2, entry.length));
+        }
+        this.record.clear();
+        if (entry.data.length == entry.length) {
+            this.record.put(entry.data);
+        }
+        else {
+            this.inflater.reset();
+            this.inflater.setInput(entry.data);
+            try {
+                if (this.inflater.inflate(this.record.array(), 0, entry.length) != entry.length) {
+                    throw new DataFormatException("Record is truncated");
+                }
+            }
+            catch (DataFormatException e) {
+                throw new IllegalStateException("Compressed page of PID " + entry.pid + " is corrupt", e);
+            }
+            this.record.position(entry.length);
+        }
+        this.record.flip();
+        this.decompressTime += System.nanoTime() - start;
+        return this.record;
+    }
+
+    /**
+     * Count a page that was read from the swap area as it was no longer held here
+     */
+    public void miss() {
+        this.misses++;
+    }
+
+    /**
+     * Get the maximum total size of compressed records
+     * @return Capacity in bytes
+     */
+    public long getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Get the total size of compressed records currently held
+     * @return Size in bytes
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Get the ratio of the size of records before compression to their size after, over every record compressed
+     * @return Compression ratio, or 0 if nothing has been compressed
+     */
+    public double getRatio() {
+        return this.bytesOut == 0 ? 0 : (double) this.bytesIn / this.bytesOut;
+    }
+
+    /**
+     * Get the number of pages paged in from here
+     * @return Hits
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Get the number of pages that had to be paged in from the swap area
+     * @return Misses
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Get the total time spent compressing records
+     * @return Time in nanoseconds
+     */
+    public long getCompressTime() {
+        return this.compressTime;
+    }
+
+    /**
+     * Get the total time spent decompressing records
+     * @return Time in nanoseconds
+     */
+    public long getDecompressTime() {
+        return this.decompressTime;
+    }
+}
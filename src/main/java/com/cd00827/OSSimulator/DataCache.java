@@ -0,0 +1,84 @@
+package com.cd00827.OSSimulator;
+
+import java.util.Arrays;
+
+/**
+ * Direct mapped cache of a process' data, indexed by virtual address.<br>
+ * Values are the messages they were read or written with, as these already hold the value in its typed form. The
+ * cache is write-through, so memory is always up to date and entries can be thrown away at any time.<br>
+ * Only the core executing the process uses its cache. Other threads may invalidate it, which takes effect the next time
+ * the core uses it.
+ * @author cd00827
+ */
+public class DataCache {
+    private final int[] addresses;
+    private final Message[] values;
+    private final int mask;
+    private volatile boolean stale;
+
+    /**
+     * Constructor
+     * @param size Number of entries, rounded up to a power of 2
+     */
+    public DataCache(int size) {
+        int entries = Integer.highestOneBit(Math.max(size, 1));
+        if (entries < size) {
+            entries <<= 1;
+        }
+        this.addresses = new int[entries];
+        this.values = new Message[entries];
+        this.mask = entries - 1;
+        this.clear();
+    }
+
+    /**
+     * Get the cached value of an address
+     * @param address Virtual address
+     * @return Message holding the value, or null if it isn't cached
+     */
+    public Message get(int address) {
+        this.check();
+        int index = address & this.mask;
+        if (this.addresses[index] == address) {
+            return this.values[index];
+        }
+        return null;
+    }
+
+    /**
+     * Cache the value of an address
+     * @param address Virtual address
+     * @param value Message holding the value
+     */
+    public void put(int address, Message value) {
+        this.check();
+        int index = address & this.mask;
+        this.addresses[index] = address;
+        this.values[index] = value;
+    }
+
+    /**
+     * Throw away every entry, may be called from any thread
+     */
+    public void invalidate() {
+        this.stale = true;
+    }
+
+    /**
+     * Clear the cache if it has been invalidated since it was last used
+     */
+    private void check() {
+        if (this.stale) {
+            this.stale = false;
+            this.clear();
+        }
+    }
+
+    /**
+     * Remove every entry
+     */
+    private void clear() {
+        Arrays.fill(this.addresses, -1);
+        Arrays.fill(this.values, null);
+    }
+}
@@ -0,0 +1,76 @@
+package com.cd00827.OSSimulator;
+
+import java.util.Arrays;
+
+/**
+ * Distribution of a set of measurements, used to compare how long processes take under different scheduling policies.
+ * <br>
+ * Measurements are added by one thread and may be summarised by another, so every method is synchronised.
+ * @author cd00827
+ */
+public class Distribution {
+    private long[] values;
+    private int count;
+    private long total;
+
+    /**
+     * Constructor
+     */
+    public Distribution() {
+        this.values = new long[16];
+        this.count = 0;
+        this.total = 0;
+    }
+
+    /**
+     * Add a measurement
+     * @param value Measurement
+     */
+    public synchronized void add(long value) {
+        if (this.count == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.count * 2);
+        }
+        this.values[this.count++] = value;
+        this.total += value;
+    }
+
+    /**
+     * Get the number of measurements
+     * @return Count
+     */
+    public synchronized int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Get the mean of the measurements
+     * @return Mean, or 0 if there are none
+     */
+    public synchronized double getMean() {
+        return this.count == 0 ? 0 : (double) this.total / this.count;
+    }
+
+    /**
+     * Get a percentile of the measurements, using the nearest rank
+     * @param percentile Percentile, from 0 to 100
+     * @return Smallest measurement that at least this percent of measurements are no greater than, or 0 if there are none
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (this.count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(this.values, this.count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * this.count);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+
+    /**
+     * Summarise the measurements
+     * @return Mean, median, 95th percentile and maximum
+     */
+    @Override
+    public synchronized String toString() {
+        return "mean " + String.format("%.1f", this.getMean()) + ", median " + this.getPercentile(50) + ", 95th percentile " + this.getPercentile(95) + ", max " + this.getPercentile(100);
+    }
+}
@@ -0,0 +1,276 @@
+package com.cd00827.OSSimulator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The right hand side of a math instruction, compiled to reverse polish notation.<br>
+ * Expressions are compiled once when a program is decoded. Operators follow the usual precedence, with * / % binding
+ * tighter than + -, and brackets and unary minus are supported. Evaluation works on primitive doubles using a stack
+ * supplied by the caller, so evaluating an expression does not allocate.
+ * @author cd00827
+ */
+public class Expression {
+    private enum Op {
+        CONSTANT, VARIABLE, NEGATE, ADD, SUBTRACT, MULTIPLY, DIVIDE, MODULO
+    }
+
+    //Operations in the order they are evaluated
+    private final Op[] ops;
+    //Values pushed by CONSTANT operations, in order
+    private final double[] constants;
+    //Index into the expression's variables pushed by VARIABLE operations, in order
+    private final int[] operands;
+    //Slots of the variables read by this expression, in the order they first appear
+    private final int[] variables;
+    private final int depth;
+
+    /**
+     * Constructor, compiles an expression
+     * @param expression Expression to compile, with whitespace removed
+     * @param variables Map of the variables declared by the program to their slot in the process' variable table
+     * @throws IllegalArgumentException If the expression is malformed or uses a variable the program never declares
+     */
+    public Expression(String expression, Map<String, Integer> variables) {
+        List<Op> ops = new ArrayList<>();
+        List<Double> constants = new ArrayList<>();
+        List<Integer> operands = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        //Operators waiting for their right hand operand
+        Deque<Op> pending = new ArrayDeque<>();
+        //Size of the pending stack when each open bracket was reached
+        Deque<Integer> brackets = new ArrayDeque<>();
+        //True when the next token must be an operand
+        boolean operand = true;
+
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            if (c == '(') {
+                if (!operand) {
+                    throw new IllegalArgumentException("Unexpected '(' in expression");
+                }
+                brackets.push(pending.size());
+                i++;
+            }
+            else if (c == ')') {
+                if (operand || brackets.isEmpty()) {
+                    throw new IllegalArgumentException("Unexpected ')' in expression");
+                }
+                int base = brackets.pop();
+                while (pending.size() > base) {
+                    ops.add(pending.pop());
+                }
+                i++;
+            }
+            else if (isOperator(c)) {
+                if (operand) {
+                    //Only minus can appear where an operand is expected
+                    if (c != '-') {
+                        throw new IllegalArgumentException("Unexpected '" + c + "' in expression");
+                    }
+                    pending.push(Op.NEGATE);
+                }
+                else {
+                    Op op = operator(c);
+                    //Pop operators of equal or higher precedence, stopping at the innermost open bracket
+                    int base = brackets.isEmpty() ? 0 : brackets.peek();
+                    while (pending.size() > base && precedence(pending.peek()) >= precedence(op)) {
+                        ops.add(pending.pop());
+                    }
+                    pending.push(op);
+                    operand = true;
+                }
+                i++;
+            }
+            else {
+                if (!operand) {
+                    throw new IllegalArgumentException("Expected operator in expression");
+                }
+                //Read up to the next operator or bracket
+                int end = i;
+                while (end < expression.length() && !isOperator(expression.charAt(end)) && expression.charAt(end) != '(' && expression.charAt(end) != ')') {
+                    end++;
+                }
+                String token = expression.substring(i, end);
+                Integer slot = variables.get(token);
+                if (slot != null) {
+                    int index = slots.indexOf(slot);
+                    if (index < 0) {
+                        index = slots.size();
+                        slots.add(slot);
+                    }
+                    ops.add(Op.VARIABLE);
+                    operands.add(index);
+                }
+                else {
+                    try {
+                        constants.add(Double.parseDouble(token));
+                    }
+                    catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Variable not defined: " + token);
+                    }
+                    ops.add(Op.CONSTANT);
+                }
+                operand = false;
+                i = end;
+            }
+        }
+        if (operand || !brackets.isEmpty()) {
+            throw new IllegalArgumentException("Incomplete expression");
+        }
+        while (!pending.isEmpty()) {
+            ops.add(pending.pop());
+        }
+
+        this.ops = ops.toArray(new Op[0]);
+        this.constants = constants.stream().mapToDouble(Double::doubleValue).toArray();
+        this.operands = operands.stream().mapToInt(Integer::intValue).toArray();
+        this.variables = slots.stream().mapToInt(Integer::intValue).toArray();
+
+        //Work out the stack depth needed to evaluate
+        int size = 0;
+        int depth = 0;
+        for (Op op : this.ops) {
+            switch (op) {
+                case CONSTANT:
+                case VARIABLE:
+                    size++;
+                    break;
+
+                case NEGATE:
+                    break;
+
+                default:
+                    size--;
+            }
+            depth = Math.max(depth, size);
+        }
+        this.depth = depth;
+    }
+
+    /**
+     * Check if a character is a binary operator
+     * @param c Character
+     * @return True if c is + - * / or %
+     */
+    private static boolean isOperator(char c) {
+        return c == '+' || c == '-' || c == '*' || c == '/' || c == '%';
+    }
+
+    /**
+     * Get the operation for an operator character
+     * @param c Operator character
+     * @return Operation
+     */
+    private static Op operator(char c) {
+        switch (c) {
+            case '+':
+                return Op.ADD;
+
+            case '-':
+                return Op.SUBTRACT;
+
+            case '*':
+                return Op.MULTIPLY;
+
+            case '/':
+                return Op.DIVIDE;
+
+            default:
+                return Op.MODULO;
+        }
+    }
+
+    /**
+     * Get the precedence of an operation, higher binds tighter
+     * @param op Operation
+     * @return Precedence
+     */
+    private static int precedence(Op op) {
+        switch (op) {
+            case NEGATE:
+                return 3;
+
+            case MULTIPLY:
+            case DIVIDE:
+            case MODULO:
+                return 2;
+
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Get the variables this expression reads
+     * @return Slots in the variable table, each appearing once, in the order the values must be passed to evaluate
+     */
+    public int[] getVariables() {
+        return this.variables;
+    }
+
+    /**
+     * Get the size of stack needed to evaluate this expression
+     * @return Number of elements
+     */
+    public int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * Evaluate this expression
+     * @param values Values of the variables, in the same order as getVariables
+     * @param stack Scratch space of at least getDepth elements
+     * @return Result
+     */
+    public double evaluate(double[] values, double[] stack) {
+        int top = -1;
+        int constant = 0;
+        int operand = 0;
+        for (Op op : this.ops) {
+            switch (op) {
+                case CONSTANT:
+                    stack[++top] = this.constants[constant++];
+                    break;
+
+                case VARIABLE:
+                    stack[++top] = values[this.operands[operand++]];
+                    break;
+
+                case NEGATE:
+                    stack[top] = -stack[top];
+                    break;
+
+                case ADD:
+                    top--;
+                    stack[top] = stack[top] + stack[top + 1];
+                    break;
+
+                case SUBTRACT:
+                    top--;
+                    stack[top] = stack[top] - stack[top + 1];
+                    break;
+
+                case MULTIPLY:
+                    top--;
+                    stack[top] = stack[top] * stack[top + 1];
+                    break;
+
+                case DIVIDE:
+                    top--;
+                    stack[top] = stack[top] / stack[top + 1];
+                    break;
+
+                case MODULO:
+                    top--;
+                    stack[top] = stack[top] % stack[top + 1];
+                    break;
+            }
+        }
+        return stack[top];
+    }
+}
@@ -0,0 +1,80 @@
+package com.cd00827.OSSimulator;
+
+import java.util.function.IntPredicate;
+
+/**
+ * First in first out page replacement, evicts the page that was loaded longest ago regardless of how it is used
+ * @author cd00827
+ */
+public class FIFOPolicy extends ReplacementPolicy {
+    //Time each frame was loaded
+    private final long[] loaded;
+    private long time;
+
+    /**
+     * Constructor
+     * @param frames Number of frames of physical memory
+     */
+    public FIFOPolicy(int frames) {
+        this.loaded = new long[frames];
+        this.time = 0;
+    }
+
+    /**
+     * Record that a page has been loaded into a frame
+     * @param frame Frame number
+     */
+    @Override
+    public void loaded(int frame) {
+        this.loaded[frame] = ++this.time;
+    }
+
+    /**
+     * Accesses don't affect the order pages are evicted in
+     * @param frame Frame number
+     */
+    @Override
+    public void accessed(int frame) {}
+
+    /**
+     * Choose a frame to evict
+     * @param candidate Test for the frames that may be evicted
+     * @return Frame number, or -1 if no frame passes the test
+     */
+    @Override
+    protected int choose(IntPredicate candidate) {
+        int victim = -1;
+        for (int frame = 0; frame < this.loaded.length; frame++) {
+            if (candidate.test(frame) && (victim < 0 || this.loaded[frame] < this.loaded[victim])) {
+                victim = frame;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Choose a frame to evict out of a list of frames
+     * @param frames Frames that may be evicted
+     * @param count Number of frames in the list
+     * @return Frame number, or -1 if the list is empty
+     */
+    @Override
+    protected int choose(int[] frames, int count) {
+        int victim = -1;
+        for (int i = 0; i < count; i++) {
+            if (victim < 0 || this.loaded[frames[i]] < this.loaded[victim]) {
+                victim = frames[i];
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Get the name of this policy
+     * @return Name shown to the user
+     */
+    @Override
+    public String getName() {
+        return "FIFO";
+    }
+}
@@ -0,0 +1,116 @@
+package com.cd00827.OSSimulator;
+
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * Fair scheduling, gives every process an equal share of the CPU by always running the process that has run least.<br>
+ * Each process has a virtual runtime, the number of cycles it has run for, and waiting processes are kept in a tree
+ * ordered by it. A running process is preempted once it has run for a time slice and another process has run less.
+ * New processes start at the smallest virtual runtime seen so far rather than 0, so they cannot hold the CPU until they
+ * catch up. Unblocked processes get up to a time slice of credit for the time they were blocked, so processes that
+ * block often run soon after they are unblocked, but cannot build up enough credit to starve other processes.
+ * @author cd00827
+ */
+public class FairPolicy extends SchedulingPolicy {
+    private final int quantum;
+    private final TreeSet<PCB> tree;
+    //Virtual runtime of the last process chosen, never decreases
+    private long minVruntime;
+
+    /**
+     * Constructor
+     * @param quantum Minimum number of cycles a process runs for before it can be preempted
+     */
+    public FairPolicy(int quantum) {
+        this.quantum = quantum;
+        //PIDs are unique, so break ties with them to keep processes with the same virtual runtime distinct
+        this.tree = new TreeSet<>(Comparator.comparingLong(PCB::getVruntime).thenComparingInt(PCB::getPid));
+        this.minVruntime = 0;
+        this.order(this.tree);
+    }
+
+    /**
+     * Add a process to the tree, ranked by its virtual runtime. Its virtual runtime must not change while it is in the
+     * tree
+     * @param process Process
+     */
+    private void insert(PCB process) {
+        process.setRank(process.getVruntime());
+        process.setState(ProcessState.READY);
+        this.tree.add(process);
+    }
+
+    /**
+     * Add a process, at no less than the smallest virtual runtime
+     * @param process Process
+     */
+    @Override
+    public void add(PCB process) {
+        process.setVruntime(Math.max(process.getVruntime(), this.minVruntime));
+        this.insert(process);
+    }
+
+    /**
+     * Return a preempted process to the tree
+     * @param process Process
+     */
+    @Override
+    public void preempt(PCB process) {
+        this.insert(process);
+    }
+
+    /**
+     * Return an unblocked process to the tree, with up to a time slice of credit
+     * @param process Process
+     */
+    @Override
+    public void wake(PCB process) {
+        process.setVruntime(Math.max(process.getVruntime(), this.minVruntime - this.quantum));
+        this.insert(process);
+    }
+
+    /**
+     * Count a cycle of a process' virtual runtime
+     * @param process Process
+     * @return True if the process has run for a time slice and a waiting process has run less
+     */
+    @Override
+    public boolean tick(PCB process) {
+        process.setVruntime(process.getVruntime() + 1);
+        process.setSlice(process.getSlice() + 1);
+        return process.getSlice() >= this.quantum && !this.tree.isEmpty() && this.tree.first().getVruntime() < process.getVruntime();
+    }
+
+    /**
+     * Choose the process with the smallest virtual runtime
+     * @return Process, or null if the tree is empty
+     */
+    @Override
+    protected PCB choose() {
+        PCB process = this.tree.pollFirst();
+        if (process != null) {
+            this.minVruntime = Math.max(this.minVruntime, process.getVruntime());
+            process.setSlice(0);
+        }
+        return process;
+    }
+
+    /**
+     * Remove a process from the tree
+     * @param process Process
+     */
+    @Override
+    protected void forget(PCB process) {
+        this.tree.remove(process);
+    }
+
+    /**
+     * Get the name of this policy
+     * @return Name shown to the user
+     */
+    @Override
+    public String getName() {
+        return "Fair";
+    }
+}
@@ -0,0 +1,265 @@
+package com.cd00827.OSSimulator;
+
+import java.util.Map;
+
+/**
+ * A single decoded instruction.<br>
+ * Programs are decoded once when they are loaded, so the CPU can execute an instruction without tokenising it again.
+ * Variables are resolved to slots in the process' variable table, labels to the PC they point at, and numeric
+ * arguments are parsed. Any error found while decoding is kept and thrown when the instruction is executed, so a
+ * process still runs up to the point its first invalid instruction is reached.
+ * @author cd00827
+ */
+public class Instruction {
+    //Instruction stored in empty blocks of memory
+    public static final Instruction EMPTY = new Instruction("null", Map.of(), Map.of());
+
+    private final String source;
+    private String text;
+    private Opcode opcode;
+    private int var = -1;
+    private int operand = -1;
+    private String literal;
+    private CellType literalType = CellType.EMPTY;
+    private double literalNumber;
+    private int number;
+    private int target = -1;
+    private Comparison comparison;
+    private Expression expression;
+    private RuntimeException error;
+
+    /**
+     * Constructor, decodes a line of a program
+     * @param line Line of the program, including any label
+     * @param labels Map of the program's labels to the line they are defined on
+     * @param variables Map of the variables declared by the program to their slot in the process' variable table
+     */
+    public Instruction(String line, Map<String, Integer> labels, Map<String, Integer> variables) {
+        this.source = line;
+        //Split label from instruction
+        String[] split = line.split(":", 2);
+        this.text = split.length == 2 ? split[1] : split[0];
+        String[] tokens = this.text.split("\\s");
+        try {
+            switch (tokens[0]) {
+                //Empty line
+                case "null":
+                    this.opcode = Opcode.NULL;
+                    break;
+
+                //var [name] [address] {value}
+                case "var":
+                    this.opcode = Opcode.VAR;
+                    this.var = variables.getOrDefault(tokens[1], -1);
+                    this.number = Integer.parseInt(tokens[2]);
+                    if (tokens.length == 4) {
+                        this.setLiteral(tokens[3]);
+                    }
+                    break;
+
+                //alloc [blocks]
+                case "alloc":
+                    this.opcode = Opcode.ALLOC;
+                    this.number = Integer.parseInt(tokens[1]);
+                    break;
+
+                //free [blocks]
+                case "free":
+                    this.opcode = Opcode.FREE;
+                    this.number = Integer.parseInt(tokens[1]);
+                    break;
+
+                //exit
+                case "exit":
+                    this.opcode = Opcode.EXIT;
+                    break;
+
+                //jump [label]
+                case "jump":
+                    this.opcode = Opcode.JUMP;
+                    this.target = labels.getOrDefault(tokens[1], -1);
+                    break;
+
+                //jumpif [var1] [comparator] [var2/value] [label]
+                case "jumpif":
+                    this.opcode = Opcode.JUMPIF;
+                    this.target = labels.getOrDefault(tokens[4], -1);
+                    this.var = variables.getOrDefault(tokens[1], -1);
+                    this.comparison = Comparison.of(tokens[2]);
+                    this.operand = variables.getOrDefault(tokens[3], -1);
+                    this.setLiteral(tokens[3]);
+                    break;
+
+                //set [var] [var/value]
+                case "set":
+                    this.opcode = Opcode.SET;
+                    this.var = variables.getOrDefault(tokens[1], -1);
+                    this.operand = variables.getOrDefault(tokens[2], -1);
+                    this.setLiteral(tokens[2]);
+                    break;
+
+                //out [var]
+                case "out":
+                    this.opcode = Opcode.OUT;
+                    this.var = variables.getOrDefault(tokens[1], -1);
+                    break;
+
+                //inc [var]
+                case "inc":
+                    this.opcode = Opcode.INC;
+                    this.var = variables.getOrDefault(tokens[1], -1);
+                    break;
+
+                //dec [var]
+                case "dec":
+                    this.opcode = Opcode.DEC;
+                    this.var = variables.getOrDefault(tokens[1], -1);
+                    break;
+
+                //math [expression]
+                case "math": {
+                    this.opcode = Opcode.MATH;
+                    //Merge tokens back into one string
+                    StringBuilder builder = new StringBuilder();
+                    for (int i = 1; i < tokens.length; i++) {
+                        builder.append(tokens[i]);
+                    }
+                    String expression = builder.toString().replaceAll("\\s", "");
+
+                    //Split target from expression and compile it
+                    String[] sides = expression.split("=");
+                    this.var = variables.getOrDefault(sides[0], -1);
+                    this.expression = new Expression(sides[1], variables);
+                }
+                break;
+
+                default:
+                    throw new IllegalArgumentException("Invalid instruction");
+            }
+        }
+        catch (RuntimeException e) {
+            this.opcode = Opcode.INVALID;
+            this.error = e;
+        }
+    }
+
+    /**
+     * Set the literal value given by this instruction, parsing it if it is a number
+     * @param literal Literal value
+     */
+    private void setLiteral(String literal) {
+        this.literal = literal;
+        if (Memory.isNumeric(literal)) {
+            this.literalType = CellType.NUMERIC_TEXT;
+            this.literalNumber = Double.parseDouble(literal);
+        }
+        else {
+            this.literalType = CellType.TEXT;
+        }
+    }
+
+    /**
+     * Get the operation this instruction performs
+     * @return Opcode
+     */
+    public Opcode getOpcode() {
+        return this.opcode;
+    }
+
+    /**
+     * Get the text of this instruction, without its label
+     * @return Instruction text
+     */
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * Get the slot of the variable this instruction operates on
+     * @return Slot in the variable table, or -1 if the program never declares the variable
+     */
+    public int getVar() {
+        return this.var;
+    }
+
+    /**
+     * Get the slot of the second operand of a set or jumpif instruction
+     * @return Slot in the variable table, or -1 if the operand is not a variable the program declares
+     */
+    public int getOperand() {
+        return this.operand;
+    }
+
+    /**
+     * Get the literal value given by this instruction, used when the operand is not a variable
+     * @return Literal value, or null if there is none
+     */
+    public String getLiteral() {
+        return this.literal;
+    }
+
+    /**
+     * Get the type of the literal value given by this instruction
+     * @return NUMERIC_TEXT or TEXT, or EMPTY if there is no literal
+     */
+    public CellType getLiteralType() {
+        return this.literalType;
+    }
+
+    /**
+     * Get the literal value given by this instruction as a number
+     * @return Number, only meaningful if the literal type is NUMERIC_TEXT
+     */
+    public double getLiteralNumber() {
+        return this.literalNumber;
+    }
+
+    /**
+     * Get the numeric argument of this instruction
+     * @return Address for var instructions, number of blocks for alloc and free instructions
+     */
+    public int getNumber() {
+        return this.number;
+    }
+
+    /**
+     * Get the PC this instruction jumps to
+     * @return PC, or -1 if the label is not defined
+     */
+    public int getTarget() {
+        return this.target;
+    }
+
+    /**
+     * Get the comparator used by a jumpif instruction
+     * @return Comparator
+     */
+    public Comparison getComparison() {
+        return this.comparison;
+    }
+
+    /**
+     * Get the right hand side of a math instruction
+     * @return Compiled expression
+     */
+    public Expression getExpression() {
+        return this.expression;
+    }
+
+    /**
+     * Get the error found while decoding this instruction
+     * @return Exception to throw when executed
+     */
+    public RuntimeException getError() {
+        return this.error;
+    }
+
+    /**
+     * Represent this instruction as a string
+     * @return The line of the program this was decoded from
+     */
+    @Override
+    public String toString() {
+        return this.source;
+    }
+}
@@ -4,10 +4,8 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
-import java.util.concurrent.locks.ReentrantLock;
 
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
@@ -39,21 +37,44 @@ public class Kernel implements Initializable {
     @FXML
     private TextField memoryClock;
     @FXML
+    private TextField tlbSize;
+    @FXML
+    private TextField tlbWays;
+    @FXML
+    private ChoiceBox<String> replacementPolicy;
+    @FXML
+    private TextField compressedSwap;
+    @FXML
     private TextField quantum;
     @FXML
     private TextField schedulerClock;
     @FXML
+    private ChoiceBox<String> schedulingPolicy;
+    @FXML
+    private TextField lookahead;
+    @FXML
     private TextField cpuClock;
+    @FXML
+    private TextField cpuCores;
+    @FXML
+    private TextField cpuCache;
+    @FXML
+    private TextField cpuPrefetch;
+    @FXML
+    private CheckBox maxSpeed;
 
     private Stage stage;
     private Mailbox mailbox;
     private Thread mmu;
+    private MMU mmuInstance;
+    private Scheduler schedulerInstance;
     private Thread scheduler;
-    private Thread cpu;
+    private Thread[] cpus;
+    private CPU[] cpuInstances;
     private boolean booted = false;
+    private long bootTime;
     private FileChooser fileChooser;
-    private ReentrantLock swapLock;
-    private List<PCB> swappable;
+    private SwappableSet swappable;
 
     /**
      * Called when the JavaFX application loads the kernel
@@ -67,14 +88,24 @@ public class Kernel implements Initializable {
         this.fileChooser = new FileChooser();
         this.fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files", "*.txt"));
         this.input.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
-        this.swapLock = new ReentrantLock();
-        this.swappable = new ArrayList<>();
+        this.swappable = new SwappableSet();
         this.pageSize.textProperty().addListener(new IntChecker(this.pageSize.textProperty()));
         this.pageNumber.textProperty().addListener(new IntChecker(this.pageNumber.textProperty()));
         this.memoryClock.textProperty().addListener(new DoubleChecker(this.memoryClock.textProperty()));
+        this.tlbSize.textProperty().addListener(new IntChecker(this.tlbSize.textProperty()));
+        this.tlbWays.textProperty().addListener(new IntChecker(this.tlbWays.textProperty()));
+        this.compressedSwap.textProperty().addListener(new IntChecker(this.compressedSwap.textProperty()));
+        this.replacementPolicy.getItems().addAll(List.of(ReplacementPolicy.NAMES));
+        this.replacementPolicy.setValue(ReplacementPolicy.NAMES[0]);
+        this.schedulingPolicy.getItems().addAll(List.of(SchedulingPolicy.NAMES));
+        this.schedulingPolicy.setValue(SchedulingPolicy.NAMES[0]);
         this.quantum.textProperty().addListener(new IntChecker(this.quantum.textProperty()));
+        this.lookahead.textProperty().addListener(new IntChecker(this.lookahead.textProperty()));
         this.schedulerClock.textProperty().addListener(new DoubleChecker(this.schedulerClock.textProperty()));
         this.cpuClock.textProperty().addListener(new DoubleChecker(this.cpuClock.textProperty()));
+        this.cpuCores.textProperty().addListener(new IntChecker(this.cpuCores.textProperty()));
+        this.cpuCache.textProperty().addListener(new IntChecker(this.cpuCache.textProperty()));
+        this.cpuPrefetch.textProperty().addListener(new IntChecker(this.cpuPrefetch.textProperty()));
 
         //Set up input directory
         File dir = new File("input");
@@ -120,7 +151,7 @@ public class Kernel implements Initializable {
     @FXML
     private void execute() {
         for (InputFile file : this.input.getItems()) {
-            this.mailbox.put(Mailbox.KERNEL, Mailbox.SCHEDULER, "new|" + file.getPath());
+            this.mailbox.put(Mailbox.KERNEL, Mailbox.SCHEDULER, Command.NEW, -1, 0, file.getPath(), false);
         }
         this.input.getItems().clear();
     }
@@ -161,23 +192,70 @@ public class Kernel implements Initializable {
             int pageNumber = Integer.parseInt(this.pageNumber.getText());
             double memoryClock = Double.parseDouble(this.memoryClock.getText());
 
-            this.mmu = new Thread(new MMU(pageSize, pageNumber, memoryClock, this.mailbox, this.output.getItems(), this.swapLock, this.swappable));
+            //In max speed mode all clocks share a virtual timeline instead of sleeping
+            Timeline timeline = null;
+            if (this.maxSpeed.isSelected()) {
+                timeline = new Timeline();
+                this.output.getItems().add("[KERNEL] Running at max speed, clock speeds are kept relative to each other in virtual time");
+            }
+
+            //TLB size and associativity are optional, default to 16 entries in sets of 4
+            int tlbSize = this.tlbSize.getText().equals("") ? 16 : Integer.parseInt(this.tlbSize.getText());
+            int tlbWays = this.tlbWays.getText().equals("") ? 4 : Math.max(Integer.parseInt(this.tlbWays.getText()), 1);
+            //Compressed swap is optional, given in KB and disabled by default
+            long compressedSwap = this.compressedSwap.getText().equals("") ? 0 : Long.parseLong(this.compressedSwap.getText()) * 1024;
+
+            this.mmuInstance = new MMU(pageSize, pageNumber, tlbSize, tlbWays, ReplacementPolicy.of(this.replacementPolicy.getValue(), pageNumber), compressedSwap, new Clock(memoryClock, timeline), this.mailbox, this.output.getItems(), this.swappable);
+            this.mmu = new Thread(this.mmuInstance);
             this.mmu.start();
             this.output.getItems().add("[KERNEL] Started MMU with " + pageNumber + " " + pageSize + " block pages (" + pageNumber * pageSize + " blocks physical RAM) at clock speed " + memoryClock + "ops/s");
+            this.output.getItems().add("[KERNEL] Using " + this.replacementPolicy.getValue() + " page replacement");
+            if (this.mmuInstance.getTLB() != null) {
+                this.output.getItems().add("[KERNEL] Enabled " + this.mmuInstance.getTLB().getSize() + " entry " + tlbWays + " way TLB");
+            }
+            if (this.mmuInstance.getCompressedSwap() != null) {
+                this.output.getItems().add("[KERNEL] Enabled " + compressedSwap / 1024 + "KB compressed swap");
+            }
 
             double schedulerClock = Double.parseDouble(this.schedulerClock.getText());
             int quantum = Integer.parseInt(this.quantum.getText());
 
-            Scheduler schedulerInstance = new Scheduler(schedulerClock, this.mailbox, quantum, this.output.getItems(), this.swapLock, this.swappable);
-            this.scheduler = new Thread(schedulerInstance);
+            //Core count is optional, default to a single core
+            int cores = this.cpuCores.getText().equals("") ? 1 : Math.max(Integer.parseInt(this.cpuCores.getText()), 1);
+
+            //Lookahead is optional, default to not prefetching
+            int lookahead = this.lookahead.getText().equals("") ? 0 : Integer.parseInt(this.lookahead.getText());
+
+            this.schedulerInstance = new Scheduler(new Clock(schedulerClock, timeline), this.mailbox, SchedulingPolicy.of(this.schedulingPolicy.getValue(), quantum), cores, this.output.getItems(), this.swappable, lookahead);
+            this.scheduler = new Thread(this.schedulerInstance);
             this.scheduler.start();
             this.output.getItems().add("[KERNEL] Started scheduler with quantum " + quantum + " at " + schedulerClock + "ops/s");
+            this.output.getItems().add("[KERNEL] Using " + this.schedulingPolicy.getValue() + " scheduling");
+            if (lookahead > 0) {
+                this.output.getItems().add("[KERNEL] Prefetching swapped out processes among the next " + lookahead + " to run");
+            }
 
             double cpuClock = Double.parseDouble(this.cpuClock.getText());
+            //Cache size is optional, default to no caching
+            int cacheSize = this.cpuCache.getText().equals("") ? 0 : Integer.parseInt(this.cpuCache.getText());
+            //Prefetch depth is optional, default to fetching one instruction at a time
+            int prefetch = this.cpuPrefetch.getText().equals("") ? 1 : Math.max(Integer.parseInt(this.cpuPrefetch.getText()), 1);
 
-            this.cpu = new Thread(new CPU(schedulerInstance, this.mailbox, cpuClock, this.execTrace.getItems(), this.output.getItems()));
-            this.cpu.start();
-            this.output.getItems().add("[KERNEL] Started CPU at " + cpuClock + "ops/s");
+            this.cpus = new Thread[cores];
+            this.cpuInstances = new CPU[cores];
+            for (int core = 0; core < cores; core++) {
+                this.cpuInstances[core] = new CPU(core, this.schedulerInstance, this.mailbox, new Clock(cpuClock, timeline), cacheSize, prefetch, this.execTrace.getItems(), this.output.getItems());
+                this.cpus[core] = new Thread(this.cpuInstances[core]);
+                this.cpus[core].start();
+            }
+            this.output.getItems().add("[KERNEL] Started CPU with " + cores + " core(s) at " + cpuClock + "ops/s");
+            if (cacheSize > 0) {
+                this.output.getItems().add("[KERNEL] Enabled " + cacheSize + " block data cache per process");
+            }
+            if (prefetch > 1) {
+                this.output.getItems().add("[KERNEL] Fetching up to " + prefetch + " instructions at once");
+            }
+            this.bootTime = System.nanoTime();
 
             this.booted = true;
             this.boot.setDisable(true);
@@ -205,10 +283,45 @@ public class Kernel implements Initializable {
         if (this.booted) {
             this.mmu.interrupt();
             this.output.getItems().add("[KERNEL] Stopped MMU");
+            this.output.getItems().add("[KERNEL] MMU handled " + this.mmuInstance.getPageFaults() + " page faults and wrote back " + this.mmuInstance.getPagesWritten() + " pages");
+            ReplacementPolicy policy = this.mmuInstance.getPolicy();
+            this.output.getItems().add("[KERNEL] " + policy.getName() + " page replacement: " + policy.getEvictions() + " evictions, " + policy.getRefaults() + " re-faults");
+            TLB tlb = this.mmuInstance.getTLB();
+            if (tlb != null && tlb.getHits() + tlb.getMisses() > 0) {
+                this.output.getItems().add("[KERNEL] TLB: " + tlb.getHits() + " hits, " + tlb.getMisses() + " misses (" + String.format("%.1f", 100.0 * tlb.getHits() / (tlb.getHits() + tlb.getMisses())) + "% hit rate)");
+            }
+            SwapWorker worker = this.mmuInstance.getSwapWorker();
+            this.output.getItems().add("[KERNEL] Swap I/O: " + worker.getReads() + " pages read, " + worker.getWrites() + " pages written, " + String.format("%.3f", worker.getBusyTime() / 1e6) + "ms busy");
+            CompressedSwap compressed = this.mmuInstance.getCompressedSwap();
+            if (compressed != null) {
+                long pagesIn = compressed.getHits() + compressed.getMisses();
+                this.output.getItems().add("[KERNEL] Compressed swap: " + String.format("%.2f", compressed.getRatio()) + " compression ratio, " + compressed.getHits() + " hits, " + compressed.getMisses() + " misses (" + String.format("%.1f", pagesIn == 0 ? 0.0 : 100.0 * compressed.getHits() / pagesIn) + "% hit rate)");
+                this.output.getItems().add("[KERNEL] Compressed swap: " + String.format("%.3f", compressed.getCompressTime() / 1e6) + "ms compressing, " + String.format("%.3f", compressed.getDecompressTime() / 1e6) + "ms decompressing");
+            }
             this.scheduler.interrupt();
             this.output.getItems().add("[KERNEL] Stopped scheduler");
-            this.cpu.interrupt();
+            this.output.getItems().add("[KERNEL] Scheduler requested " + this.schedulerInstance.getPrefetches() + " prefetches, cores spent " + this.schedulerInstance.getSwapWaitCycles() + " cycles idle waiting for swap-in");
+            this.output.getItems().add("[KERNEL] " + this.schedulerInstance.getPolicy().getName() + " scheduling: " + this.schedulerInstance.getTurnaround().getCount() + " processes completed");
+            this.output.getItems().add("[KERNEL] Turnaround cycles: " + this.schedulerInstance.getTurnaround());
+            this.output.getItems().add("[KERNEL] Wait cycles: " + this.schedulerInstance.getWaitTime());
+            for (Thread cpu : this.cpus) {
+                cpu.interrupt();
+            }
             this.output.getItems().add("[KERNEL] Stopped CPU");
+            //Report how many instructions were run and how well the data cache did
+            long instructions = 0;
+            long hits = 0;
+            long misses = 0;
+            for (CPU cpu : this.cpuInstances) {
+                instructions += cpu.getInstructions();
+                hits += cpu.getCacheHits();
+                misses += cpu.getCacheMisses();
+            }
+            double seconds = (System.nanoTime() - this.bootTime) / 1e9;
+            this.output.getItems().add("[KERNEL] CPU ran " + instructions + " instructions in " + String.format("%.1f", seconds) + "s (" + String.format("%.1f", instructions / seconds) + " instructions/s)");
+            if (hits + misses > 0) {
+                this.output.getItems().add("[KERNEL] CPU data cache: " + hits + " hits, " + misses + " misses (" + String.format("%.1f", 100.0 * hits / (hits + misses)) + "% hit rate)");
+            }
             this.mailbox.clear();
             this.boot.setDisable(false);
             this.shutdown.setDisable(true);
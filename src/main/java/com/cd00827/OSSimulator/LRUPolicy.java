@@ -0,0 +1,82 @@
+package com.cd00827.OSSimulator;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Least recently used page replacement, evicts the page that has gone longest without being accessed
+ * @author cd00827
+ */
+public class LRUPolicy extends ReplacementPolicy {
+    //Time each frame was last accessed
+    private final long[] used;
+    private long time;
+
+    /**
+     * Constructor
+     * @param frames Number of frames of physical memory
+     */
+    public LRUPolicy(int frames) {
+        this.used = new long[frames];
+        this.time = 0;
+    }
+
+    /**
+     * Record that a page has been loaded into a frame
+     * @param frame Frame number
+     */
+    @Override
+    public void loaded(int frame) {
+        this.used[frame] = ++this.time;
+    }
+
+    /**
+     * Record that a frame has been read or written
+     * @param frame Frame number
+     */
+    @Override
+    public void accessed(int frame) {
+        this.used[frame] = ++this.time;
+    }
+
+    /**
+     * Choose a frame to evict
+     * @param candidate Test for the frames that may be evicted
+     * @return Frame number, or -1 if no frame passes the test
+     */
+    @Override
+    protected int choose(IntPredicate candidate) {
+        int victim = -1;
+        for (int frame = 0; frame < this.used.length; frame++) {
+            if (candidate.test(frame) && (victim < 0 || this.used[frame] < this.used[victim])) {
+                victim = frame;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Choose a frame to evict out of a list of frames
+     * @param frames Frames that may be evicted
+     * @param count Number of frames in the list
+     * @return Frame number, or -1 if the list is empty
+     */
+    @Override
+    protected int choose(int[] frames, int count) {
+        int victim = -1;
+        for (int i = 0; i < count; i++) {
+            if (victim < 0 || this.used[frames[i]] < this.used[victim]) {
+                victim = frames[i];
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Get the name of this policy
+     * @return Name shown to the user
+     */
+    @Override
+    public String getName() {
+        return "LRU";
+    }
+}
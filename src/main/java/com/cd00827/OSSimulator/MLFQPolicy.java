@@ -0,0 +1,149 @@
+package com.cd00827.OSSimulator;
+
+/**
+ * Multi-level feedback queue scheduling, favours processes that block often over processes that keep the CPU busy.<br>
+ * Processes wait in one of several round robin queues, and are always chosen from the highest queue that has any. New
+ * processes start in the highest queue. A process that uses up its time slice is moved down a queue, and a process that
+ * is unblocked is moved up a queue, so CPU bound processes sink and processes that block often rise. Lower queues have
+ * longer time slices, so CPU bound processes are switched less often. Every so often, every waiting process is moved
+ * back to the highest queue, so processes in the lower queues are not starved.
+ * @author cd00827
+ */
+public class MLFQPolicy extends SchedulingPolicy {
+    //Number of queues, each has double the time slice of the one above it
+    private static final int LEVELS = 3;
+    //Number of time slices of the highest queue between moving every process back to it
+    private static final int BOOST_INTERVAL = 32;
+    //Processes are ranked by queue, then by the order they were queued
+    private static final int RANK_SHIFT = 48;
+
+    private final int quantum;
+    private final ProcessQueue[] levels;
+    //Cycles run by every process since processes were last moved back to the highest queue
+    private long ticks;
+
+    /**
+     * Constructor
+     * @param quantum Number of cycles in a time slice of the highest queue
+     */
+    public MLFQPolicy(int quantum) {
+        this.quantum = quantum;
+        this.levels = new ProcessQueue[LEVELS];
+        for (int level = 0; level < LEVELS; level++) {
+            this.levels[level] = new ProcessQueue(ProcessState.READY);
+            this.order(this.levels[level]);
+        }
+        this.ticks = 0;
+    }
+
+    /**
+     * Move a process to the back of a queue, starting a new time slice if it changes queue
+     * @param process Process
+     * @param level Queue number, clamped to the queues that exist
+     */
+    private void enqueue(PCB process, int level) {
+        level = Math.max(0, Math.min(level, LEVELS - 1));
+        if (level != process.getLevel()) {
+            process.setLevel(level);
+            process.setSlice(0);
+        }
+        process.setRank(((long) level << RANK_SHIFT) + this.sequence());
+        this.levels[level].add(process);
+    }
+
+    /**
+     * Add a process to its current queue, the highest queue for new processes
+     * @param process Process
+     */
+    @Override
+    public void add(PCB process) {
+        this.enqueue(process, process.getLevel());
+    }
+
+    /**
+     * Move a preempted process down a queue
+     * @param process Process
+     */
+    @Override
+    public void preempt(PCB process) {
+        this.enqueue(process, process.getLevel() + 1);
+    }
+
+    /**
+     * Move an unblocked process up a queue
+     * @param process Process
+     */
+    @Override
+    public void wake(PCB process) {
+        this.enqueue(process, process.getLevel() - 1);
+    }
+
+    /**
+     * Count a cycle of a process' time slice. A process that blocks keeps what is left of its time slice unless it
+     * changes queue
+     * @param process Process
+     * @return True if the process has used up its time slice
+     */
+    @Override
+    public boolean tick(PCB process) {
+        this.ticks++;
+        process.setSlice(process.getSlice() + 1);
+        if (process.getSlice() >= this.quantum << process.getLevel()) {
+            process.setSlice(0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Move every waiting process back to the highest queue if it is time to
+     * @return True if waiting processes were moved
+     */
+    @Override
+    public boolean rebalance() {
+        if (this.ticks < (long) this.quantum * BOOST_INTERVAL) {
+            return false;
+        }
+        this.ticks = 0;
+        for (int level = 1; level < LEVELS; level++) {
+            PCB waiting;
+            while ((waiting = this.levels[level].poll()) != null) {
+                this.enqueue(waiting, 0);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Choose the process at the front of the highest queue that has any
+     * @return Process, or null if every queue is empty
+     */
+    @Override
+    protected PCB choose() {
+        for (ProcessQueue queue : this.levels) {
+            PCB process = queue.poll();
+            if (process != null) {
+                return process;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove a process from its queue
+     * @param process Process
+     */
+    @Override
+    protected void forget(PCB process) {
+        this.levels[process.getLevel()].remove(process);
+    }
+
+    /**
+     * Get the name of this policy
+     * @return Name shown to the user
+     */
+    @Override
+    public String getName() {
+        return "MLFQ";
+    }
+}
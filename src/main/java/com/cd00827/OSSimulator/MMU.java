@@ -4,59 +4,172 @@ import javafx.application.Platform;
 import javafx.collections.ObservableList;
 
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Stream;
 
 /**
  * Memory management unit.<br>
  * Maintains an array representing physical RAM, and allocates memory to processes using a paging system.
- * Allows for processes to be swapped out to text files when memory is full.
+ * Pages are loaded on demand, the first access to a page that is not resident causes a page fault that loads just that
+ * page. When memory is full the replacement policy chooses a resident page to evict to make room, which is written back
+ * only if it has been modified since it was loaded. Pages are written back to the compressed swap if it is enabled, and
+ * moved on to the swap area once it is full, or straight to the swap area otherwise.
+ * Reading and writing the swap area is left to a swap worker on its own thread. A frame is reserved for a page being
+ * read, and messages from its process wait until the read completes, while messages from other processes carry on being
+ * handled.
  * Provides read and write access to memory.
  *
  * @author cd00827
  */
 public class MMU implements Runnable {
-    private final String[] ram;
+    //Returned by pageIn when no frame can be freed, and when the page is being read from swap
+    private static final int NO_FRAME = -1;
+    private static final int READING = -2;
+
+    private final Memory ram;
     private final int pageSize;
     private final int pageNumber;
-    //Map pid to a map of page number to frame offset
-    private final Map<Integer, Map<Integer, Integer>> pageTable;
-    //Keep a record of allocated frames
-    private final Map<Integer, Boolean> frameAllocationRecord;
+    //Map pid to its page table
+    private final Map<Integer, PageTable> pageTable;
+    //Stack of the offsets of free frames, the first freeFrameCount elements are valid
+    private final int[] freeFrames;
+    private int freeFrameCount;
+    //PID and page number of the page resident in each frame, and whether it has been written since it was loaded
+    private final int[] framePid;
+    private final int[] framePage;
+    private final boolean[] frameDirty;
+    //Frames reserved for pages being read from the swap area, which cannot be evicted until the read completes
+    private final boolean[] frameTransit;
+    //Scratch space for the frames of the process chosen to evict a page from
+    private final int[] candidates;
+    //Reads and writes pages in the swap area
+    private final SwapWorker worker;
+    //Messages waiting for a page of their process to be read, in the order they arrived
+    private final Map<Integer, ArrayDeque<Message>> waiting;
+    //Set when the message being handled has to wait for a page to be read
+    private boolean stalled;
+    //Number of writes in flight for each PID, and processes to notify as swapped out once their writes complete
+    private final Map<Integer, Integer> pendingWrites;
+    private final Set<Integer> swappingOut;
+    //Number of reads in flight, pages loaded so far and whether it is a prefetch, for each PID being swapped in
+    private final Map<Integer, int[]> swappingIn;
+    //Number of frames a prefetch leaves free for processes that are running
+    private final int prefetchReserve;
+    //Holds pages that have been written back compressed in memory, null if disabled
+    private final CompressedSwap compressed;
+    //Scratch space for encoding pages being written back
+    private ByteBuffer record;
+    //Chooses which page to evict when memory is full
+    private final ReplacementPolicy policy;
+    private long pageFaults;
+    private long pagesWritten;
+    //Cache of recent translations, null if disabled
+    private final TLB tlb;
     private final Mailbox mailbox;
-    private final double clockSpeed;
+    private final Clock clock;
     private final ObservableList<String> log;
-    private final ReentrantLock swapLock;
-    private final List<PCB> swappable;
+    //Processes whose pages are preferred for eviction, maintained by the scheduler
+    private final SwappableSet swappable;
 
     /**
      * Constructor
      * @param pageSize Size of memory pages in blocks
      * @param pageNumber Number of pages, multiplied by pageSize to get the size of physical memory
-     * @param clockSpeed Number of operations to perform per second
+     * @param tlbSize Number of entries in the TLB, 0 to disable it
+     * @param tlbWays Number of entries in each set of the TLB
+     * @param policy Page replacement policy, created for pageNumber frames
+     * @param compressedSize Capacity of the compressed swap in bytes, 0 to disable it
+     * @param clock Clock to pace this MMU with
      * @param mailbox Mailbox to control this MMU with
      * @param log Log to output messages to
-     * @param swapLock Lock to use for synchronising swap operations
-     * @param swappable List to use for getting the currently swappable processes
+     * @param swappable Set of processes whose pages should be evicted first, in order of preference
      */
-    public MMU(int pageSize, int pageNumber, double clockSpeed, Mailbox mailbox, ObservableList<String> log, ReentrantLock swapLock, List<PCB> swappable) {
-        this.ram = new String[pageSize * pageNumber];
+    public MMU(int pageSize, int pageNumber, int tlbSize, int tlbWays, ReplacementPolicy policy, long compressedSize, Clock clock, Mailbox mailbox, ObservableList<String> log, SwappableSet swappable) {
+        this.ram = new Memory(pageSize * pageNumber);
         this.pageSize = pageSize;
         this.pageNumber = pageNumber;
-        this.clockSpeed = clockSpeed;
+        this.clock = clock;
         this.mailbox = mailbox;
-        this.pageTable = new TreeMap<>();
-        this.frameAllocationRecord = new TreeMap<>();
-        for (int page = 0; page < pageNumber; page++) {
-            frameAllocationRecord.put(page * pageSize, false);
+        this.pageTable = new HashMap<>();
+        //Push frames in reverse, so memory is initially allocated from the lowest address up
+        this.freeFrames = new int[pageNumber];
+        for (int page = pageNumber - 1; page >= 0; page--) {
+            this.freeFrames[this.freeFrameCount++] = page * pageSize;
         }
+        this.framePid = new int[pageNumber];
+        this.framePage = new int[pageNumber];
+        this.frameDirty = new boolean[pageNumber];
+        this.frameTransit = new boolean[pageNumber];
+        this.candidates = new int[pageNumber];
+        Arrays.fill(this.framePid, -1);
+        //Slots have room for 16 bytes per block, enough for most blocks, and records that don't fit carry on in another
+        //slot. The swap file is sized for twice the number of frames to begin with, and grows if more is needed
+        this.worker = new SwapWorker(Path.of("swap", "swap.bin"), 8 + pageSize * 16, pageNumber * 2, mailbox, log);
+        this.waiting = new HashMap<>();
+        this.stalled = false;
+        this.pendingWrites = new HashMap<>();
+        this.swappingOut = new HashSet<>();
+        this.swappingIn = new HashMap<>();
+        this.prefetchReserve = Math.max(pageNumber / 8, 1);
+        this.policy = policy;
+        this.pageFaults = 0;
+        this.pagesWritten = 0;
+        this.tlb = tlbSize > 0 ? new TLB(tlbSize, tlbWays) : null;
+        this.compressed = compressedSize > 0 ? new CompressedSwap(compressedSize) : null;
+        this.record = ByteBuffer.allocate(pageSize * 16);
         this.log = log;
-        this.swapLock = swapLock;
         this.swappable = swappable;
     }
 
+    /**
+     * Get the TLB used by this MMU
+     * @return TLB, or null if it is disabled
+     */
+    public TLB getTLB() {
+        return this.tlb;
+    }
+
+    /**
+     * Get the compressed swap used by this MMU
+     * @return Compressed swap, or null if it is disabled
+     */
+    public CompressedSwap getCompressedSwap() {
+        return this.compressed;
+    }
+
+    /**
+     * Get the swap worker used by this MMU
+     * @return Swap worker
+     */
+    public SwapWorker getSwapWorker() {
+        return this.worker;
+    }
+
+    /**
+     * Get the page replacement policy used by this MMU
+     * @return Replacement policy
+     */
+    public ReplacementPolicy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * Get the number of page faults this MMU has handled
+     * @return Page faults
+     */
+    public long getPageFaults() {
+        return this.pageFaults;
+    }
+
+    /**
+     * Get the number of pages this MMU has written back to swap
+     * @return Pages written
+     */
+    public long getPagesWritten() {
+        return this.pagesWritten;
+    }
+
     /**
      * Write a message to the log
      * @param message Message
@@ -70,278 +183,433 @@ public class MMU implements Runnable {
      */
     @Override
     public void run() {
+        Thread worker = new Thread(this.worker);
+        worker.setDaemon(true);
+        worker.start();
         while (true) {
-            //Get next command
-            Message message = this.mailbox.get(Mailbox.MMU);
+            //Wait for a command, then for the next clock cycle
+            Message message;
+            try {
+                this.clock.idle();
+                message = this.mailbox.receive(Mailbox.MMU);
+                this.clock.await();
+            }
+            catch (InterruptedException e) {
+                worker.interrupt();
+                return;
+            }
             if (message != null) {
-                String[] command = message.getCommand();
-                switch (command[0]) {
-
-                    //allocate [pid] [blocks] [loading]
-                    case "allocate": {
-                        int pid = Integer.parseInt(command[1]);
-                        int blocks = Integer.parseInt(command[2]);
-                        boolean loading = Boolean.parseBoolean(command[3]);
-                        boolean done = false;
-                        boolean swapping = false;
-                        int swapIndex = 0;
-
-                        //Allocate memory
-                        while (!done) {
-                            switch (this.allocate(pid, blocks)) {
-                                //Success, unblock process
-                                case 1:
-                                    if (loading) {
-                                        this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, "allocated|" + pid);
-                                    }
-                                    else {
-                                        this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, "unblock|" + pid);
-                                    }
-                                    this.log("[MMU] Allocated " + blocks + " blocks to PID " + pid);
-                                    done = true;
-                                    break;
-
-                                //Must free up memory and try again
-                                case -1:
-                                    //If this is the first swap operation, acquire swap lock or wait until available
-                                    if (!swapping) {
-                                        swapping = true;
-                                        this.swapLock.lock();
-                                    }
-                                    PCB process = null;
-                                    try {
-                                        process = this.swappable.get(swapIndex);
-                                    }
-                                    catch (IndexOutOfBoundsException ignored) {}
-
-                                    if (process == null) {
-                                        //There is enough memory in the system, but no processes are available to swap
-                                        //Tell scheduler to skip this process
-                                        this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, "skip|" + pid);
-                                        this.log("[MMU] Could not swap out enough processes to allocate for PID " + pid + ", skipping");
-                                        done = true;
-                                    }
-                                    else {
-                                        //Swap out process and notify scheduler
-                                        this.swapOut(process.getPid());
-                                        swapIndex++;
-                                        this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, "swappedOut|" + process.getPid());
-                                        this.log("[MMU] Swapped out PID " + process.getPid());
-                                    }
-                                    break;
-
-                                //Not enough total system memory - drop the process
-                                case -2:
-                                    this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, "drop|" + pid);
-                                    this.log("[MMU/ERROR] Out of memory for PID " + pid);
-                                    //Break out of loop as nothing more can be done
-                                    done = true;
-                                    break;
-                            }
-                        }
-                        //If swapping occurred, release swap lock so scheduler can run again
-                        if (swapping) {
-                            this.swapLock.unlock();
-                        }
+                //Keep messages in order behind any of their process that are waiting for a page to be read
+                if (this.waiting.containsKey(message.getPid()) && this.isOrdered(message)) {
+                    this.waiting.get(message.getPid()).add(message);
+                }
+                else {
+                    this.handle(message);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if a message has to be handled in order with the other messages of its process
+     * @param message Message
+     * @return True if the message accesses the memory of its process
+     */
+    private boolean isOrdered(Message message) {
+        switch (message.getCommand()) {
+            case ALLOCATE:
+            case FREE:
+            case READ:
+            case READ_RANGE:
+            case WRITE:
+            case LOAD_IMAGE:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Put a message aside until a page its process is waiting for has been read
+     * @param message Message
+     */
+    private void defer(Message message) {
+        this.waiting.computeIfAbsent(message.getPid(), pid -> new ArrayDeque<>()).add(message);
+    }
+
+    /**
+     * Handle every message that was put aside again, in the order they arrived. Those that still have to wait are put
+     * aside again in the same order
+     */
+    private void retry() {
+        if (this.waiting.isEmpty()) {
+            return;
+        }
+        List<ArrayDeque<Message>> retrying = new ArrayList<>(this.waiting.values());
+        this.waiting.clear();
+        for (ArrayDeque<Message> messages : retrying) {
+            for (Message message : messages) {
+                if (this.waiting.containsKey(message.getPid())) {
+                    this.waiting.get(message.getPid()).add(message);
+                }
+                else {
+                    this.handle(message);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle a message
+     * @param message Message
+     */
+    private void handle(Message message) {
+        this.stalled = false;
+        switch (message.getCommand()) {
+
+            //allocate [pid] [blocks] [loading]
+            case ALLOCATE: {
+                int pid = message.getPid();
+                int blocks = message.getValue();
+                boolean loading = message.getFlag();
+
+                //Pages are loaded when they are first accessed, so allocating never has to wait for memory
+                if (this.allocate(pid, blocks)) {
+                    if (loading) {
+                        this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.ALLOCATED, pid);
                     }
-                    break;
-
-                    //free [pid] [blocks]
-                    case "free": {
-                        int pid = Integer.parseInt(command[1]);
-                        int blocks = Integer.parseInt(command[2]);
-
-                        if (this.free(pid, blocks)) {
-                            this.log("[MMU] Freed "+ blocks + " blocks from PID " + pid);
-                        }
-                        else{
-                            //Process has caused an error, so drop it
-                            this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, "drop|" + pid);
-                            this.log("[MMU/ERROR] PID " + pid + " attempted to free more memory than allocated to it");
-                        }
+                    else {
+                        this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.UNBLOCK, pid);
                     }
-                    break;
-
-                    //swapIn [pid]
-                    case "swapIn": {
-                        int pid = Integer.parseInt(command[1]);
-                        //If there is enough memory to swap in process, do it and notify scheduler.
-                        //Otherwise tell scheduler to skip this process
-                        if (this.swapIn(pid)) {
-                            this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, "swappedIn|" + pid);
-                            this.log("[MMU] Swapped in PID " + pid);
-                        }
-                        else {
-                            this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, "skip|" + pid);
-                            this.log("[MMU] Not enough free memory to swap in PID " + pid + ", skipping");
-                        }
+                    this.log("[MMU] Allocated " + blocks + " blocks to PID " + pid);
+                }
+                //Not enough total system memory - drop the process
+                else {
+                    this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.DROP, pid);
+                    this.log("[MMU/ERROR] Out of memory for PID " + pid);
+                }
+            }
+            break;
+
+            //free [pid] [blocks]
+            case FREE: {
+                int pid = message.getPid();
+                int blocks = message.getValue();
+
+                if (this.free(pid, blocks)) {
+                    this.log("[MMU] Freed "+ blocks + " blocks from PID " + pid);
+                }
+                else{
+                    //Process has caused an error, so drop it
+                    this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.DROP, pid);
+                    this.log("[MMU/ERROR] PID " + pid + " attempted to free more memory than allocated to it");
+                }
+            }
+            break;
+
+            //swapIn [pid] [prefetch]
+            case SWAP_IN: {
+                int pid = message.getPid();
+                //Load as much of the process as fits in free memory, anything else is paged in on demand
+                this.swapIn(pid, message.getFlag());
+            }
+            break;
+
+            //pageRead [pid] [page] [request]
+            case PAGE_READ:
+                this.pageRead((SwapWorker.Request) message.getData());
+                break;
+
+            //pageWritten [pid] [page] [request]
+            case PAGE_WRITTEN:
+                this.pageWritten((SwapWorker.Request) message.getData());
+                break;
+
+            //read [pid] [address] [final]
+            case READ: {
+                int pid = message.getPid();
+                int address = message.getValue();
+                int physical = this.translate(pid, address, false);
+                //If read is successful, send data to whatever requested it, otherwise drop the process
+                if (physical >= 0) {
+                    this.mailbox.put(Mailbox.MMU, message.getSender(), Command.DATA, pid, address, this.ram.getType(physical), this.ram.getNumber(physical), this.ram.getObject(physical), message.getFlag());
+                    //Unblock process if this was the final read operation
+                    if (message.getFlag()) {
+                        this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.UNBLOCK, pid);
                     }
-                    break;
-
-                    //read [pid] [address] [final]
-                    case "read": {
-                        int pid = Integer.parseInt(command[1]);
-                        int address = Integer.parseInt(command[2]);
-                        String[] data = this.read(pid, address);
-                        //If read is successful, send data to whatever requested it, otherwise drop the process
-                        if (data[0].equals("success")) {
-                            //Unblock process if this was the final read operation
-                            if (Boolean.parseBoolean(command[3])) {
-                                this.mailbox.put(Mailbox.MMU, message.getSender(), "data|" + data[1] + "|true");
-                                this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, "unblock|" + pid);
-                            }
-                            else {
-                                this.mailbox.put(Mailbox.MMU, message.getSender(), "data|" + data[1] + "|false");
-                            }
-                            this.log("[MMU] Read '" + data[1] + "' from virtual address " + address + " for PID " + pid);
-                        }
-                        //Drop process if write causes an error
-                        else {
-                            this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, "drop|" + pid);
-                            this.log("[MMU/ERROR] PID " + pid + " attempted to read from an invalid address");
-                        }
+                    this.log("[MMU] Read '" + this.ram.getText(physical) + "' from virtual address " + address + " for PID " + pid);
+                }
+                //Wait for the page to be read from swap, then try again
+                else if (this.stalled) {
+                    this.defer(message);
+                }
+                //Drop process if read causes an error
+                else {
+                    this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.DROP, pid);
+                    this.log("[MMU/ERROR] PID " + pid + " attempted to read from an invalid address");
+                }
+            }
+            break;
+
+            //readRange [pid] [address] [blocks] [final]
+            case READ_RANGE: {
+                int pid = message.getPid();
+                int address = message.getValue();
+                Object[] blocks = this.readRange(pid, address, (int) message.getNumber());
+                //If read is successful, send the blocks to whatever requested them, otherwise drop the process
+                if (blocks != null) {
+                    this.mailbox.put(Mailbox.MMU, message.getSender(), Command.CODE, pid, address, blocks, message.getFlag());
+                    //Unblock process if this was the final read operation
+                    if (message.getFlag()) {
+                        this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.UNBLOCK, pid);
                     }
-                    break;
-
-                    //write [pid] [address] [data] [final]
-                    case "write": {
-                        int pid = Integer.parseInt(command[1]);
-                        int address = Integer.parseInt(command[2]);
-                        String data = command[3];
-                        if (this.write(pid, address, data)) {
-                            //Unblock process if this was the final write operation
-                            if (Boolean.parseBoolean(command[4])) {
-                                this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, "unblock|" + pid);
-                            }
-                            this.log("[MMU] Wrote '" + data + "' to virtual address " + address + " for PID " + pid);
-                        }
-                        else {
-                            this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, "drop|" + pid);
-                            this.log("[MMU/ERROR] PID " + pid + " attempted to write to an invalid address");
-                        }
+                    this.log("[MMU] Read " + blocks.length + " blocks from virtual address " + address + " for PID " + pid);
+                }
+                //Wait for the page to be read from swap, then try again
+                else if (this.stalled) {
+                    this.defer(message);
+                }
+                //Drop process if read causes an error
+                else {
+                    this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.DROP, pid);
+                    this.log("[MMU/ERROR] PID " + pid + " attempted to read from an invalid address");
+                }
+            }
+            break;
+
+            //write [pid] [address] [data] [final]
+            case WRITE: {
+                int pid = message.getPid();
+                int address = message.getValue();
+                if (this.write(pid, address, message.getType(), message.getNumber(), message.getData())) {
+                    //Unblock process if this was the final write operation
+                    if (message.getFlag()) {
+                        this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.UNBLOCK, pid);
                     }
-                    break;
-
-                    //drop [pid]
-                    case "drop": {
-                        int pid = Integer.parseInt(command[1]);
-                        this.flushProcess(pid);
-                        this.log("[MMU] Dropped PID " + pid);
+                    this.log("[MMU] Wrote '" + message.asText() + "' to virtual address " + address + " for PID " + pid);
+                }
+                else if (this.stalled) {
+                    this.defer(message);
+                }
+                else {
+                    this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.DROP, pid);
+                    this.log("[MMU/ERROR] PID " + pid + " attempted to write to an invalid address");
+                }
+            }
+            break;
+
+            //loadImage [pid] [address] [blocks] [final]
+            case LOAD_IMAGE: {
+                int pid = message.getPid();
+                int address = message.getValue();
+                Object[] image = (Object[]) message.getData();
+                if (this.writeRange(pid, address, image)) {
+                    //Unblock process if this was the final write operation
+                    if (message.getFlag()) {
+                        this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.UNBLOCK, pid);
                     }
-
-                    break;
+                    this.log("[MMU] Wrote " + image.length + " blocks to virtual address " + address + " for PID " + pid);
+                }
+                else if (this.stalled) {
+                    this.defer(message);
+                }
+                else {
+                    this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.DROP, pid);
+                    this.log("[MMU/ERROR] PID " + pid + " attempted to write to an invalid address");
                 }
             }
-
-            //Wait for next clock cycle
-            try {
-                Thread.sleep((long)((1/clockSpeed) * 1000));
+            break;
+
+            //drop [pid]
+            case DROP: {
+                int pid = message.getPid();
+                this.flushProcess(pid);
+                //Reads and writes of the process may still be queued, so the scheduler is told once they are done
+                this.worker.drop(pid);
+                this.log("[MMU] Dropped PID " + pid);
             }
-            catch (InterruptedException e) {
-                return;
+            break;
+
+            //dropped [pid]
+            case DROPPED: {
+                //The swap worker has finished with the process, and so has everything else, so its PID can be reused
+                this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.DROPPED, message.getPid());
             }
+            break;
         }
     }
 
     /**
-     * Read from a virtual address
+     * Translate a virtual address to a physical address, paging it in if it is not resident
      * @param pid PID of process
-     * @param address Virtual address to read
-     * @return [status, data]<br>
-     *     Status is either "success" or "error"
+     * @param address Virtual address to translate
+     * @param write True if the address is being written to
+     * @return Physical address, or -1 if the process does not have access to the virtual address or has to wait for the
+     * page to be read from swap, in which case stalled is set
      */
-    private String[] read(int pid, int address) {
+    private int translate(int pid, int address, boolean write) {
+        if (address < 0) {
+            return -1;
+        }
         int page = address / this.pageSize;
-        int offset = address % this.pageSize;
-        //Check process has access to address
-        if (this.pageTable.get(pid).containsKey(page)) {
-            try {
-                //Return data
-                String value = this.ram[this.pageTable.get(pid).get(page) + offset];
-                return new String[] {"success", value};
+        int frame = this.tlb == null ? -1 : this.tlb.lookup(pid, page);
+        //Walk the page table if the translation isn't cached
+        if (frame < 0) {
+            PageTable pages = this.pageTable.get(pid);
+            if (pages == null || !pages.isMapped(page)) {
+                return -1;
+            }
+            frame = pages.get(page);
+            if (frame < 0) {
+                if (pages.isInTransit(page)) {
+                    this.stalled = true;
+                    return -1;
+                }
+                frame = this.pageIn(pid, pages, page);
+                //Every frame is reserved for a page being read, so wait for one of them
+                if (frame == NO_FRAME) {
+                    this.stalled = true;
+                    return -1;
+                }
+                this.pageFaults++;
+                if (pages.isEvicted(page)) {
+                    this.policy.refault();
+                }
+                if (frame == READING) {
+                    this.stalled = true;
+                    return -1;
+                }
             }
-            //Catch exception if address is null
-            catch (NullPointerException e) {
-                return new String[] {"error", "null"};
+            if (this.tlb != null) {
+                this.tlb.insert(pid, page, frame);
             }
         }
-        return new String[] {"error", "null"};
+        int index = frame / this.pageSize;
+        this.policy.accessed(index);
+        if (write) {
+            this.frameDirty[index] = true;
+        }
+        return frame + address % this.pageSize;
+    }
+
+    /**
+     * Check if a process has access to a virtual address, without paging it in
+     * @param pid PID of process
+     * @param address Virtual address
+     * @return True if the address is mapped
+     */
+    private boolean isMapped(int pid, int address) {
+        PageTable pages = this.pageTable.get(pid);
+        return address >= 0 && pages != null && pages.isMapped(address / this.pageSize);
     }
 
     /**
      * Write to virtual address
      * @param pid PID of process
      * @param address Virtual address to write to
-     * @param data Data to write
-     * @return True if successful, false if process does not have access to requested address
+     * @param type Type of value to write
+     * @param number Numeric value to write
+     * @param data Object value to write
+     * @return True if successful, false if process does not have access to requested address or has to wait for the page
+     * to be read from swap
      */
-    private boolean write(int pid, int address, String data) {
-        int page = address / this.pageSize;
-        int offset = address % this.pageSize;
-        if (this.pageTable.get(pid).containsKey(page)) {
-            this.ram[this.pageTable.get(pid).get(page) + offset] = data;
+    private boolean write(int pid, int address, CellType type, double number, Object data) {
+        int physical = this.translate(pid, address, true);
+        if (physical >= 0) {
+            this.ram.set(physical, type, number, data);
             return true;
         }
         return false;
     }
 
     /**
-     * Allocate memory to a process
+     * Write a contiguous range of virtual addresses, copying a page at a time
+     * @param pid PID of process
+     * @param address First virtual address to write to
+     * @param data Data to write, one element per block
+     * @return True if successful, false if process does not have access to the whole range or has to wait for a page to
+     * be read from swap
+     */
+    private boolean writeRange(int pid, int address, Object[] data) {
+        if (data.length == 0) {
+            return true;
+        }
+        //Pages are allocated contiguously, so the whole range is accessible if both ends are
+        if (!this.isMapped(pid, address) || !this.isMapped(pid, address + data.length - 1)) {
+            return false;
+        }
+        int written = 0;
+        while (written < data.length) {
+            int physical = this.translate(pid, address + written, true);
+            //Wait for the page to be read from swap, the pages already written are written again when this is retried
+            if (physical < 0) {
+                return false;
+            }
+            int length = Math.min(this.pageSize - (address + written) % this.pageSize, data.length - written);
+            this.ram.load(physical, data, written, length);
+            written += length;
+        }
+        return true;
+    }
+
+    /**
+     * Read a contiguous range of virtual addresses, copying a page at a time
+     * @param pid PID of process
+     * @param address First virtual address to read from
+     * @param blocks Number of blocks to read
+     * @return The blocks read, or null if process does not have access to the whole range or has to wait for a page to be
+     * read from swap
+     */
+    private Object[] readRange(int pid, int address, int blocks) {
+        //Pages are allocated contiguously, so the whole range is accessible if both ends are
+        if (blocks <= 0 || !this.isMapped(pid, address) || !this.isMapped(pid, address + blocks - 1)) {
+            return null;
+        }
+        Object[] data = new Object[blocks];
+        int read = 0;
+        while (read < blocks) {
+            int physical = this.translate(pid, address + read, false);
+            //Wait for the page to be read from swap
+            if (physical < 0) {
+                return null;
+            }
+            int length = Math.min(this.pageSize - (address + read) % this.pageSize, blocks - read);
+            this.ram.save(physical, data, read, length);
+            read += length;
+        }
+        return data;
+    }
+
+    /**
+     * Allocate memory to a process. The pages are not resident until they are first accessed
      * @param pid PID of process
      * @param blocks Number of blocks to allocate
-     * @return 1: Success<br>
-     * -1: Not enough free memory<br>
-     * -2: Tried to allocate more memory than available to the system<br>
+     * @return True: Success<br>
+     * False: Tried to allocate more memory than available to the system<br>
      */
-    private int allocate(int pid, int blocks) {
+    private boolean allocate(int pid, int blocks) {
         int pages = (int)Math.ceil((double)blocks / this.pageSize);
-        int freePages = 0;
-        int currentPages = 0;
 
         //Find out how much memory the process is already using
-        if (this.pageTable.containsKey(pid)) {
-            for (Map.Entry<Integer, Integer> entry : this.pageTable.get(pid).entrySet()) {
-                currentPages++;
-            }
-        }
+        PageTable table = this.pageTable.get(pid);
+        int currentPages = table == null ? 0 : table.size();
 
         //Check that the system has enough memory
         if (pages + currentPages > this.pageNumber) {
-            return -2;
-        }
-
-        //Check that there is enough free memory
-        for (Map.Entry<Integer, Boolean> entry : this.frameAllocationRecord.entrySet()) {
-            if (!entry.getValue()) {
-                freePages++;
-            }
-        }
-        if (freePages < pages) {
-            return -1;
+            return false;
         }
 
         //Allocate pages
-        int allocatedPages = 0;
-        //Iterate over all frames
-        for (Map.Entry<Integer, Boolean> entry : this.frameAllocationRecord.entrySet()) {
-            //Check if frame is free
-            if (!entry.getValue()) {
-                //Allocate frame
-                this.frameAllocationRecord.put(entry.getKey(), true);
-                //Check a map for this process exists
-                if (!this.pageTable.containsKey(pid)) {
-                    this.pageTable.put(pid, new TreeMap<>());
-                }
-                //Add mapping to page table
-                this.pageTable.get(pid).put(currentPages + allocatedPages, entry.getKey());
-                //Break out of loop if done allocating
-                allocatedPages++;
-                if (allocatedPages == pages) {
-                    break;
-                }
+        for (int i = 0; i < pages; i++) {
+            //Check a page table for this process exists
+            if (table == null) {
+                table = new PageTable();
+                this.pageTable.put(pid, table);
             }
+            table.add();
         }
-        return 1;
+        return true;
     }
 
     /**
@@ -355,22 +623,30 @@ public class MMU implements Runnable {
         int pages = (int)Math.ceil((double)blocks / this.pageSize);
 
         //Check that process has enough pages allocated
-        if (this.pageTable.get(pid) == null) {
+        PageTable table = this.pageTable.get(pid);
+        if (table == null) {
             return false;
         }
-        else if (this.pageTable.get(pid).size() < pages) {
+        else if (table.size() < pages) {
             return false;
         }
 
         //Free pages from most to least recently allocated
-        int size = this.pageTable.get(pid).size();
-        for (int i = 1; i <= pages; i++) {
-            //Clear memory to prevent bugs when executing code from reused parts of memory
-            for (int j = 0; j < this.pageSize; j++) {
-                this.ram[this.pageTable.get(pid).get(size - i) + j] = null;
+        for (int i = 0; i < pages; i++) {
+            int page = table.size() - 1;
+            this.discard(pid, table, page);
+            boolean transit = table.isInTransit(page);
+            int frame = table.removeLast();
+            //A frame reserved for a page being read is released once the read completes
+            if (transit) {
+                this.framePid[frame / this.pageSize] = -1;
+            }
+            else if (frame >= 0) {
+                this.release(frame);
+            }
+            if (this.tlb != null) {
+                this.tlb.invalidate(pid, page);
             }
-            this.frameAllocationRecord.put(this.pageTable.get(pid).get(size - i), false);
-            this.pageTable.get(pid).remove(size - i);
         }
         return true;
     }
@@ -380,83 +656,292 @@ public class MMU implements Runnable {
      * @param pid PID of process to flush
      */
     private void flushProcess(int pid) {
-        int blocks = this.pageTable.get(pid).size() * this.pageSize;
+        PageTable table = this.pageTable.get(pid);
+        if (table == null) {
+            return;
+        }
         //No error handling should be needed as method calculates memory to free using page table
-        this.free(pid, blocks);
-    }
-
-    /**
-     * Swap a process's memory out to a file.<br>
-     * Will throw a RuntimeException if swapping fails, as an inability to swap will prevent the simulator from
-     * functioning correctly.
-     * @param pid PID of process to swap out
-     */
-    private void swapOut(int pid) {
-        File dir = new File("swap");
-        File file = new File("swap", pid + ".txt");
-        try {
-            //Create swap directory
-            if (!dir.exists()) {
-                Files.createDirectory(dir.toPath());
-            }
-            //Write contents of memory to file
-            Files.deleteIfExists(file.toPath());
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-            for (Map.Entry<Integer, Integer> page : this.pageTable.get(pid).entrySet()) {
-                for (int i = 0; i < this.pageSize; i++) {
-                    if (this.ram[page.getValue() + i] != null) {
-                        writer.write(this.ram[page.getValue() + i]);
-                    }
-                    writer.newLine();
+        this.free(pid, table.size() * this.pageSize);
+        this.pageTable.remove(pid);
+        this.waiting.remove(pid);
+        this.swappingIn.remove(pid);
+        this.swappingOut.remove(pid);
+        //The PID may be reused, so make sure nothing of this process is left in the TLB
+        if (this.tlb != null) {
+            this.tlb.invalidate(pid);
+        }
+    }
+
+    /**
+     * Return a frame to the free list
+     * @param frame Frame offset
+     */
+    private void release(int frame) {
+        //Clear memory to prevent bugs when executing code from reused parts of memory
+        for (int i = 0; i < this.pageSize; i++) {
+            this.ram.clear(frame + i);
+        }
+        this.framePid[frame / this.pageSize] = -1;
+        this.freeFrames[this.freeFrameCount++] = frame;
+    }
+
+    /**
+     * Discard the copy of a page that has been written back, if it has one
+     * @param pid PID of process
+     * @param table Page table of the process
+     * @param page Page number
+     */
+    private void discard(int pid, PageTable table, int page) {
+        int slot = table.getSlot(page);
+        if (slot == PageTable.COMPRESSED) {
+            this.compressed.remove(pid, page);
+        }
+        else if (slot >= 0) {
+            this.worker.free(slot);
+        }
+        //A write in flight frees its slot when it completes and finds it is no longer needed
+        table.setSlot(page, PageTable.NONE);
+    }
+
+    /**
+     * Handle a page fault by loading a page into a frame, evicting another page if memory is full.<br>
+     * Pages in the swap area are read by the swap worker, in which case the frame is reserved for the page until the read
+     * completes.
+     * @param pid PID of process
+     * @param table Page table of the process
+     * @param page Page number
+     * @return Frame offset the page was loaded into, READING if it is being read from swap, or NO_FRAME if every frame
+     * is reserved for a page being read
+     */
+    private int pageIn(int pid, PageTable table, int page) {
+        if (this.freeFrameCount == 0) {
+            int victim = this.evict();
+            if (victim < 0) {
+                return NO_FRAME;
+            }
+            this.release(victim);
+        }
+        int frame = this.freeFrames[--this.freeFrameCount];
+        int index = frame / this.pageSize;
+        this.framePid[index] = pid;
+        this.framePage[index] = page;
+        this.frameDirty[index] = false;
+
+        int slot = table.getSlot(page);
+        if (slot >= 0) {
+            this.frameTransit[index] = true;
+            table.reserve(page, frame);
+            this.worker.read(pid, page, slot, frame);
+            if (this.compressed != null) {
+                this.compressed.miss();
+            }
+            return READING;
+        }
+
+        //Pages that have never been written back start empty, frames are cleared when they are released
+        if (slot == PageTable.COMPRESSED) {
+            SwapArea.decode(this.compressed.get(pid, page), this.ram, frame, this.pageSize);
+        }
+        else if (slot == PageTable.WRITING) {
+            SwapArea.decode(table.getWrite(page).getRecord(), this.ram, frame, this.pageSize);
+        }
+        table.load(page, frame);
+        this.policy.loaded(index);
+        return frame;
+    }
+
+    /**
+     * Load a page once the swap worker has read it into its reserved frame, then retry the messages that were waiting
+     * for it. If the page was freed while it was being read, the frame is released instead
+     * @param request Completed read
+     */
+    private void pageRead(SwapWorker.Request request) {
+        int frame = request.getFrame();
+        int index = frame / this.pageSize;
+        this.frameTransit[index] = false;
+        if (this.framePid[index] < 0) {
+            this.release(frame);
+        }
+        else {
+            SwapArea.decode(request.getRecord(), this.ram, frame, this.pageSize);
+            this.pageTable.get(request.getPid()).load(request.getPage(), frame);
+            this.policy.loaded(index);
+
+            //Let the scheduler know once every page it asked to be swapped in has been read
+            int[] swapping = this.swappingIn.get(request.getPid());
+            if (swapping != null) {
+                swapping[1]++;
+                if (--swapping[0] == 0) {
+                    this.swappingIn.remove(request.getPid());
+                    this.swappedIn(request.getPid(), swapping[1], swapping[2] == 1);
                 }
             }
-            writer.close();
-            this.flushProcess(pid);
         }
-        catch (Exception e){
-            e.printStackTrace();
-            this.log("MMU/FATAL] Swapping out PID " + pid + " failed, check you have r/w access to /swap");
-            throw new RuntimeException("MMU/FATAL] Swapping out PID " + pid + " failed, check you have r/w access to /swap");
+        this.retry();
+    }
+
+    /**
+     * Record the slot a page was written to once the swap worker has written it. If the page has been freed or written
+     * again while it was being written, the slot is freed instead
+     * @param request Completed write
+     */
+    private void pageWritten(SwapWorker.Request request) {
+        int pid = request.getPid();
+        int page = request.getPage();
+        PageTable table = this.pageTable.get(pid);
+        if (table != null && page < table.size() && table.getWrite(page) == request) {
+            table.setSlot(page, request.getSlot());
+        }
+        else {
+            this.worker.free(request.getSlot());
+        }
+
+        //Let the scheduler know the process is swapped out once all of it has been written, unless it has been paged in
+        //again since
+        if (this.pendingWrites.merge(pid, -1, Integer::sum) == 0) {
+            this.pendingWrites.remove(pid);
+            if (this.swappingOut.remove(pid) && table != null && table.getResident() == 0) {
+                this.swappedOut(pid);
+            }
         }
     }
 
     /**
-     * Swap a process's memory in from a file.<br>
-     * Will throw a RuntimeException if opening the swap file fails, as this will prevent the simulator from running
-     * properly and is likely caused by incorrect permissions
-     * @param pid PID of process to swap in
-     * @return True: Success<br>
-     *     False: Could not allocate enough memory<br>
-     */
-    private boolean swapIn(int pid) {
-        File file = new File("swap", pid + ".txt");
-        try {
-            //Get required memory
-            Stream<String> stream = Files.lines(file.toPath());
-            int blocks = (int)stream.count();
-            stream.close();
-            if (this.allocate(pid, blocks) < 0) {
-                //Failed to allocate enough memory.
-                //Case where there is not enough total system memory can be ignored, as if that was the case
-                //the process would never have existed in memory to be swapped out.
-                return false;
+     * Choose a resident page and evict it, writing it back to swap if it has been modified.<br>
+     * Pages of the waiting process that will run last are preferred, as they are the least likely to be needed soon, and
+     * the replacement policy chooses which of its pages to evict, looking only at that process' frames. If no waiting
+     * process has a page resident, the policy chooses from every page. Frames reserved for pages being read are never
+     * chosen. Must only be called when there are no free frames.
+     * @return Frame offset the page was evicted from, which still needs releasing, or -1 if every frame is reserved
+     */
+    private int evict() {
+        int victim = -1;
+        for (PCB process : this.swappable) {
+            //The CPU blocks processes before the scheduler removes them, so skip any it has just blocked
+            PageTable table = this.pageTable.get(process.getPid());
+            if (table != null && table.getResident() > 0 && !process.isBlocked()) {
+                //Resident pages are never in frames reserved for reads, so any of them can be evicted
+                int count = table.getResidentFrames(this.candidates);
+                for (int i = 0; i < count; i++) {
+                    this.candidates[i] /= this.pageSize;
+                }
+                victim = this.policy.victim(this.candidates, count);
+                break;
             }
+        }
+        if (victim < 0) {
+            victim = this.policy.victim(frame -> !this.frameTransit[frame]);
+            if (victim < 0) {
+                return -1;
+            }
+        }
+        this.pageOut(victim);
+        return victim * this.pageSize;
+    }
 
-            //Load data into memory
-            BufferedReader reader = new BufferedReader(new FileReader(file));
-            for (int i = 0; i < blocks; i++) {
-                String line = reader.readLine();
-                if (!line.trim().isEmpty()) {
-                    this.write(pid, i, line);
+    /**
+     * Evict the page resident in a frame, writing it back to swap if it has been modified
+     * @param frame Frame number
+     */
+    private void pageOut(int frame) {
+        int pid = this.framePid[frame];
+        int page = this.framePage[frame];
+        PageTable table = this.pageTable.get(pid);
+        if (this.frameDirty[frame]) {
+            //Replace any older copy of the page
+            this.record = SwapArea.encode(this.ram, frame * this.pageSize, this.pageSize, this.record);
+            this.discard(pid, table, page);
+            if (this.compressed != null) {
+                this.compressed.put(pid, page, this.record);
+                table.setSlot(page, PageTable.COMPRESSED);
+                //Move the oldest pages on to the swap area until the compressed swap is back within its capacity
+                while (this.compressed.isFull()) {
+                    CompressedSwap.Entry entry = this.compressed.evict();
+                    this.writeBack(entry.getPid(), entry.getPage(), this.compressed.decompress(entry));
                 }
             }
-            reader.close();
+            else {
+                this.writeBack(pid, page, this.record);
+            }
+            this.pagesWritten++;
         }
-        catch (IOException e) {
-            e.printStackTrace();
-            this.log("[MMU/FATAL] Swapping in PID " + pid + " failed, check you have r/w access to /swap");
-            throw new RuntimeException("[MMU/FATAL] Swapping in PID " + pid + " failed, check you have r/w access to /swap");
+        table.evict(page);
+        if (this.tlb != null) {
+            this.tlb.invalidate(pid, page);
         }
-        return true;
+
+        //Once none of a process is resident it counts as swapped out, and the scheduler will swap it in before it next
+        //runs
+        if (table.getResident() == 0) {
+            if (this.pendingWrites.containsKey(pid)) {
+                this.swappingOut.add(pid);
+            }
+            else {
+                this.swappedOut(pid);
+            }
+        }
+    }
+
+    /**
+     * Queue a page to be written to the swap area. Until the write completes the page is paged in from the record
+     * being written
+     * @param pid PID of process
+     * @param page Page number
+     * @param record Record of the page
+     */
+    private void writeBack(int pid, int page, ByteBuffer record) {
+        this.pageTable.get(pid).setWrite(page, this.worker.write(pid, page, record));
+        this.pendingWrites.merge(pid, 1, Integer::sum);
+    }
+
+    /**
+     * Swap a process back in, loading the pages it has in swap for as long as there are free frames. The scheduler is
+     * notified once any pages being read from the swap area have been read.<br>
+     * Pages are never evicted to make room, the rest of the process is paged in on demand once it runs. A prefetch also
+     * leaves a few frames free, so processes that are running can page in without evicting.
+     * @param pid PID of process to swap in
+     * @param prefetch True if the process is not about to run
+     */
+    private void swapIn(int pid, boolean prefetch) {
+        PageTable table = this.pageTable.get(pid);
+        int reserve = prefetch ? this.prefetchReserve : 0;
+        int loaded = 0;
+        int reading = 0;
+        for (int page = 0; table != null && page < table.size() && this.freeFrameCount > reserve; page++) {
+            if (table.get(page) < 0 && !table.isInTransit(page) && table.hasCopy(page)) {
+                if (this.pageIn(pid, table, page) == READING) {
+                    reading++;
+                }
+                else {
+                    loaded++;
+                }
+            }
+        }
+        if (reading == 0) {
+            this.swappedIn(pid, loaded, prefetch);
+        }
+        else {
+            this.swappingIn.put(pid, new int[] {reading, loaded, prefetch ? 1 : 0});
+        }
+    }
+
+    /**
+     * Notify the scheduler that a process has been swapped in
+     * @param pid PID of process
+     * @param pages Number of pages loaded
+     * @param prefetch True if the process was prefetched
+     */
+    private void swappedIn(int pid, int pages, boolean prefetch) {
+        this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.SWAPPED_IN, pid, pages, prefetch);
+        this.log("[MMU] " + (prefetch ? "Prefetched " : "Swapped in ") + pages + " pages of PID " + pid);
+    }
+
+    /**
+     * Notify the scheduler that a process has been swapped out
+     * @param pid PID of process
+     */
+    private void swappedOut(int pid) {
+        this.mailbox.put(Mailbox.MMU, Mailbox.SCHEDULER, Command.SWAPPED_OUT, pid);
+        this.log("[MMU] Swapped out PID " + pid);
     }
 }
@@ -3,13 +3,20 @@ package com.cd00827.OSSimulator;
 import javafx.application.Platform;
 import javafx.collections.ObservableList;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Mailbox used for synchronised communication between threads.<br>
  * Any thread may send and receive messages to/from an unlimited other number of threads using this. Messages will
- * always be received in the order they were sent.
+ * always be received in the order they were sent.<br>
+ * Each target has its own lock-free queue, so retrieving a message never has to look at messages for other targets.
+ * Threads may also wait for a message to arrive for a target, in which case they are woken as soon as one is sent.
  * @author cd00827
  */
 public class Mailbox {
@@ -18,9 +25,38 @@ public class Mailbox {
     public static final String SCHEDULER = "SCHEDULER";
     public static final String KERNEL = "KERNEL";
     public static final String CPU = "CPU";
+    public static final String SWAP = "SWAP";
 
     private final ObservableList<Message> log;
-    public List<Message> queue;
+    //Map each target to the channel of messages waiting for it
+    private final Map<String, Channel> channels;
+
+    /**
+     * Messages waiting for a single target, along with the condition used to wake threads waiting on that target
+     */
+    private static class Channel {
+        private final Queue<Message> queue = new ConcurrentLinkedQueue<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition arrived = this.lock.newCondition();
+        //Number of threads waiting on this channel, so senders only take the lock when someone needs waking
+        private final AtomicInteger waiting = new AtomicInteger();
+        private volatile boolean woken = false;
+
+        /**
+         * Wake any threads waiting on this channel
+         */
+        private void signal() {
+            if (this.waiting.get() > 0) {
+                this.lock.lock();
+                try {
+                    this.arrived.signalAll();
+                }
+                finally {
+                    this.lock.unlock();
+                }
+            }
+        }
+    }
 
     /**
      * Constructor
@@ -28,19 +64,95 @@ public class Mailbox {
      */
     public Mailbox(ObservableList<Message> log) {
         this.log = log;
-        this.queue = new ArrayList<>();
+        this.channels = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get the label of a CPU core
+     * @param core Core number
+     * @return Label
+     */
+    public static String cpu(int core) {
+        return CPU + core;
+    }
+
+    /**
+     * Get the channel for a target, creating it if this is the first time the target has been used
+     * @param target Target to get the channel of
+     * @return Channel for target
+     */
+    private Channel channel(String target) {
+        Channel channel = this.channels.get(target);
+        if (channel == null) {
+            channel = this.channels.computeIfAbsent(target, t -> new Channel());
+        }
+        return channel;
     }
 
     /**
      * Add a message to the mailbox
+     * @param message Message to add
+     */
+    void put(Message message) {
+        //Log before queueing so the log can never be asked to remove a message it hasn't added yet
+        Platform.runLater(() -> this.log.add(message));
+        Channel channel = this.channel(message.getTarget());
+        channel.queue.add(message);
+        channel.signal();
+    }
+
+    /**
+     * Add a message that only refers to a PID to the mailbox
      * @param sender Sender of this message
      * @param target Target recipient of this message
      * @param command Command in this message
+     * @param pid PID the command applies to
      */
-    synchronized void put(String sender, String target, String command) {
-        Message message = new Message(sender, target, command);
-        this.queue.add(message);
-        Platform.runLater(() -> this.log.add(message));
+    void put(String sender, String target, Command command, int pid) {
+        this.put(new Message(sender, target, command, pid, 0, null, false));
+    }
+
+    /**
+     * Add a message with no data to the mailbox
+     * @param sender Sender of this message
+     * @param target Target recipient of this message
+     * @param command Command in this message
+     * @param pid PID the command applies to
+     * @param value Address or number of blocks
+     * @param flag Final or loading flag
+     */
+    void put(String sender, String target, Command command, int pid, int value, boolean flag) {
+        this.put(new Message(sender, target, command, pid, value, null, flag));
+    }
+
+    /**
+     * Add a message carrying data to the mailbox
+     * @param sender Sender of this message
+     * @param target Target recipient of this message
+     * @param command Command in this message
+     * @param pid PID the command applies to
+     * @param value Address or number of blocks
+     * @param data Data to send
+     * @param flag Final or loading flag
+     */
+    void put(String sender, String target, Command command, int pid, int value, Object data, boolean flag) {
+        this.put(new Message(sender, target, command, pid, value, data, flag));
+    }
+
+    /**
+     * Add a message carrying the value of a block of memory to the mailbox
+     * @param sender Sender of this message
+     * @param target Target recipient of this message
+     * @param command Command in this message
+     * @param pid PID the command applies to
+     * @param address Virtual address of the block
+     * @param type Type of value
+     * @param number Numeric value
+     * @param data Object value
+     * @param flag Final flag
+     */
+    void put(String sender, String target, Command command, int pid, int address, CellType type, double number, Object data, boolean flag) {
+        this.put(new Message(sender, target, command, pid, address, type, number, data, flag));
     }
 
     /**
@@ -48,24 +160,120 @@ public class Mailbox {
      * @param target Target to get a message for
      * @return Message or null if no messages for given target
      */
-    synchronized Message get(String target) {
-        Message message = null;
-        for (Message i : this.queue) {
-            if (i.getTarget().equals(target)) {
-                message = i;
-                this.queue.remove(i);
-                Platform.runLater(() -> this.log.remove(i));
-                break;
+    Message get(String target) {
+        Channel channel = this.channels.get(target);
+        if (channel == null) {
+            return null;
+        }
+        return this.remove(channel);
+    }
+
+    /**
+     * Return and remove from the mailbox the next message for the given target, waiting for one to arrive if there are
+     * none. The wait ends early if another thread calls wake for this target.
+     * @param target Target to get a message for
+     * @return Message, or null if woken before a message arrived
+     * @throws InterruptedException If interrupted while waiting
+     */
+    Message receive(String target) throws InterruptedException {
+        return this.receive(target, 0, false);
+    }
+
+    /**
+     * Return and remove from the mailbox the next message for the given target, waiting until the given deadline for
+     * one to arrive if there are none. The wait ends early if another thread calls wake for this target.
+     * @param target Target to get a message for
+     * @param deadline Value of System.nanoTime() to stop waiting at
+     * @return Message, or null if the deadline passed or the thread was woken before a message arrived
+     * @throws InterruptedException If interrupted while waiting
+     */
+    Message receive(String target, long deadline) throws InterruptedException {
+        return this.receive(target, deadline, true);
+    }
+
+    /**
+     * Wait for a message to arrive for a target
+     * @param target Target to get a message for
+     * @param deadline Value of System.nanoTime() to stop waiting at
+     * @param timed False to ignore the deadline and wait indefinitely
+     * @return Message or null
+     * @throws InterruptedException If interrupted while waiting
+     */
+    private Message receive(String target, long deadline, boolean timed) throws InterruptedException {
+        Channel channel = this.channel(target);
+        Message message = this.remove(channel);
+        if (message != null) {
+            return message;
+        }
+        channel.lock.lock();
+        channel.waiting.incrementAndGet();
+        try {
+            //Check again now this thread is registered as waiting, as a sender may not have seen it yet
+            while ((message = this.remove(channel)) == null && !channel.woken) {
+                if (timed) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    channel.arrived.awaitNanos(remaining);
+                }
+                else {
+                    channel.arrived.await();
+                }
             }
+            channel.woken = false;
+        }
+        finally {
+            channel.waiting.decrementAndGet();
+            channel.lock.unlock();
         }
         return message;
     }
 
+    /**
+     * Wake a thread waiting for messages for a target, without sending it a message. If no thread is waiting, the next
+     * wait for this target will return immediately.
+     * @param target Target to wake
+     */
+    void wake(String target) {
+        Channel channel = this.channel(target);
+        channel.woken = true;
+        channel.signal();
+    }
+
+    /**
+     * Remove the next message from a channel and take it off the log
+     * @param channel Channel to get a message from
+     * @return Message or null if the channel is empty
+     */
+    private Message remove(Channel channel) {
+        Message message = channel.queue.poll();
+        if (message != null) {
+            Platform.runLater(() -> this.log.remove(message));
+        }
+        return message;
+    }
+
+    /**
+     * Remove every message for the given target
+     * @param target Target to clear messages for
+     */
+    void clear(String target) {
+        Channel channel = this.channels.get(target);
+        if (channel != null) {
+            while (this.remove(channel) != null) {
+                //Keep removing until the channel is empty
+            }
+        }
+    }
+
     /**
      * Clear this mailbox
      */
-    synchronized void clear() {
-        this.queue.clear();
+    void clear() {
+        for (Channel channel : this.channels.values()) {
+            channel.queue.clear();
+        }
         Platform.runLater(this.log::clear);
     }
 }
@@ -0,0 +1,193 @@
+package com.cd00827.OSSimulator;
+
+/**
+ * Physical memory.<br>
+ * Each block has a type, a numeric value and an object value. Numbers are kept in a primitive array, so reading and
+ * writing them does not create garbage. The object value holds the text of text blocks and the instruction of code
+ * blocks.
+ * @author cd00827
+ */
+public class Memory {
+    private final CellType[] types;
+    private final double[] numbers;
+    private final Object[] objects;
+
+    /**
+     * Constructor
+     * @param size Number of blocks
+     */
+    public Memory(int size) {
+        this.types = new CellType[size];
+        this.numbers = new double[size];
+        this.objects = new Object[size];
+        for (int i = 0; i < size; i++) {
+            this.types[i] = CellType.EMPTY;
+        }
+    }
+
+    /**
+     * Get the type of value in a block
+     * @param address Physical address
+     * @return Type
+     */
+    public CellType getType(int address) {
+        return this.types[address];
+    }
+
+    /**
+     * Get the numeric value of a block
+     * @param address Physical address
+     * @return Number, only meaningful for NUMBER and NUMERIC_TEXT blocks
+     */
+    public double getNumber(int address) {
+        return this.numbers[address];
+    }
+
+    /**
+     * Get the object value of a block
+     * @param address Physical address
+     * @return Text of TEXT and NUMERIC_TEXT blocks, instruction of CODE blocks, null otherwise
+     */
+    public Object getObject(int address) {
+        return this.objects[address];
+    }
+
+    /**
+     * Write a value to a block
+     * @param address Physical address
+     * @param type Type of value
+     * @param number Numeric value
+     * @param object Object value
+     */
+    public void set(int address, CellType type, double number, Object object) {
+        this.types[address] = type;
+        this.numbers[address] = number;
+        this.objects[address] = object;
+    }
+
+    /**
+     * Write a line of text to a block, working out its type
+     * @param address Physical address
+     * @param text Text to write, null or empty to clear the block
+     */
+    public void setText(int address, String text) {
+        if (text == null || text.isEmpty()) {
+            this.clear(address);
+        }
+        else if (isNumeric(text)) {
+            this.set(address, CellType.NUMERIC_TEXT, Double.parseDouble(text), text);
+        }
+        else {
+            this.set(address, CellType.TEXT, 0, text);
+        }
+    }
+
+    /**
+     * Load part of a program image into memory
+     * @param address First physical address to write to
+     * @param image Image to load, elements are decoded instructions or null for empty blocks
+     * @param offset Index of the first element of the image to load
+     * @param length Number of elements to load
+     */
+    public void load(int address, Object[] image, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            Object block = image[offset + i];
+            if (block == null) {
+                this.clear(address + i);
+            }
+            else {
+                this.set(address + i, CellType.CODE, 0, block);
+            }
+        }
+    }
+
+    /**
+     * Copy part of memory out as a program image, the reverse of load
+     * @param address First physical address to read from
+     * @param image Image to copy into, code blocks are copied as their instruction, other blocks as their text
+     * @param offset Index of the first element of the image to copy into
+     * @param length Number of elements to copy
+     */
+    public void save(int address, Object[] image, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            CellType type = this.types[address + i];
+            image[offset + i] = type == CellType.CODE ? this.objects[address + i] : format(type, this.numbers[address + i], this.objects[address + i]);
+        }
+    }
+
+    /**
+     * Empty a block
+     * @param address Physical address
+     */
+    public void clear(int address) {
+        this.set(address, CellType.EMPTY, 0, null);
+    }
+
+    /**
+     * Get a block as text
+     * @param address Physical address
+     * @return Text, or null if the block is empty
+     */
+    public String getText(int address) {
+        return format(this.types[address], this.numbers[address], this.objects[address]);
+    }
+
+    /**
+     * Check if a string is a number
+     * @param text String to check
+     * @return True if the string can be parsed as a double
+     */
+    public static boolean isNumeric(String text) {
+        try {
+            Double.parseDouble(text);
+            return true;
+        }
+        catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Check if a type of value is a number
+     * @param type Type of value
+     * @return True for NUMBER and NUMERIC_TEXT
+     */
+    public static boolean isNumber(CellType type) {
+        return type == CellType.NUMBER || type == CellType.NUMERIC_TEXT;
+    }
+
+    /**
+     * Convert a value to text
+     * @param type Type of value
+     * @param number Numeric value
+     * @param object Object value
+     * @return Text, or null if the value is empty
+     */
+    public static String format(CellType type, double number, Object object) {
+        switch (type) {
+            case EMPTY:
+                return null;
+
+            case NUMBER:
+                return String.valueOf(number);
+
+            default:
+                return String.valueOf(object);
+        }
+    }
+
+    /**
+     * Convert a value to a number
+     * @param type Type of value
+     * @param number Numeric value
+     * @param object Object value
+     * @return Number
+     * @throws NumberFormatException If the value is not a number
+     */
+    public static double toNumber(CellType type, double number, Object object) {
+        if (isNumber(type)) {
+            return number;
+        }
+        throw new NumberFormatException("For input string: \"" + object + "\"");
+    }
+}
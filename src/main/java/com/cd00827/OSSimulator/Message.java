@@ -1,24 +1,75 @@
 package com.cd00827.OSSimulator;
 
 /**
- * A message to be handled by a Mailbox
+ * A message to be handled by a Mailbox.<br>
+ * Arguments are stored as typed fields, so receivers never have to parse them. Which fields are used depends on the
+ * command:<br>
+ * new: data (path)<br>
+ * allocate: pid, value (blocks), flag (loading)<br>
+ * free: pid, value (blocks)<br>
+ * read: pid, value (address), flag (final)<br>
+ * readRange: pid, value (address), number (blocks), flag (final)<br>
+ * write: pid, value (address), type, number, data, flag (final)<br>
+ * loadImage: pid, value (address), data (array of blocks), flag (final)<br>
+ * data: pid, value (address), type, number, data, flag (final)<br>
+ * code: pid, value (address), data (array of blocks), flag (final)<br>
+ * swapIn: pid, flag (prefetch)<br>
+ * swappedIn: pid, value (pages loaded), flag (prefetch)<br>
+ * pageRead, pageWritten: pid, value (page), data (swap request)<br>
+ * Any other command: pid<br>
+ * Values of memory blocks are carried as a type, a primitive number and an object, in the same way Memory stores them,
+ * so numbers don't need converting to and from strings.
  * @author cd00827
  */
 public class Message {
     private final String sender;
     private final String target;
-    private final String command;
+    private final Command command;
+    private final int pid;
+    private final int value;
+    private final CellType type;
+    private final double number;
+    private final Object data;
+    private final boolean flag;
 
     /**
      * Constructor
      * @param sender Sender of this message
      * @param target Target receiver of this message
      * @param command Command to be executed by target
+     * @param pid PID the command applies to
+     * @param value Address or number of blocks, depending on command
+     * @param data Data carried by this message
+     * @param flag Final flag for read, write and data commands, loading flag for allocate commands, prefetch flag for swap
+     * commands
      */
-    public Message(String sender, String target, String command) {
+    public Message(String sender, String target, Command command, int pid, int value, Object data, boolean flag) {
+        this(sender, target, command, pid, value, CellType.EMPTY, 0, data, flag);
+    }
+
+    /**
+     * Constructor for messages carrying the value of a block of memory
+     * @param sender Sender of this message
+     * @param target Target receiver of this message
+     * @param command Command to be executed by target
+     * @param pid PID the command applies to
+     * @param value Address or number of blocks, depending on command
+     * @param type Type of value carried
+     * @param number Numeric value carried
+     * @param data Object value carried
+     * @param flag Final flag for read, write and data commands, loading flag for allocate commands, prefetch flag for swap
+     * commands
+     */
+    public Message(String sender, String target, Command command, int pid, int value, CellType type, double number, Object data, boolean flag) {
         this.sender = sender;
         this.target = target;
         this.command = command;
+        this.pid = pid;
+        this.value = value;
+        this.type = type;
+        this.number = number;
+        this.data = data;
+        this.flag = flag;
     }
 
     /**
@@ -41,8 +92,73 @@ public class Message {
      * Get the command contained in this message
      * @return Command
      */
-    public String[] getCommand() {
-        return this.command.split("\\|");
+    public Command getCommand() {
+        return this.command;
+    }
+
+    /**
+     * Get the PID this message applies to
+     * @return PID
+     */
+    public int getPid() {
+        return this.pid;
+    }
+
+    /**
+     * Get the address or number of blocks this message applies to
+     * @return Address or number of blocks
+     */
+    public int getValue() {
+        return this.value;
+    }
+
+    /**
+     * Get the type of value carried by this message
+     * @return Type
+     */
+    public CellType getType() {
+        return this.type;
+    }
+
+    /**
+     * Get the numeric value carried by this message
+     * @return Number, only meaningful for NUMBER and NUMERIC_TEXT values
+     */
+    public double getNumber() {
+        return this.number;
+    }
+
+    /**
+     * Get the data carried by this message
+     * @return Data
+     */
+    public Object getData() {
+        return this.data;
+    }
+
+    /**
+     * Get the value carried by this message as a number
+     * @return Number
+     * @throws NumberFormatException If the value is not a number
+     */
+    public double asNumber() {
+        return Memory.toNumber(this.type, this.number, this.data);
+    }
+
+    /**
+     * Get the value carried by this message as text
+     * @return Text, or "null" if the value is empty
+     */
+    public String asText() {
+        return String.valueOf(Memory.format(this.type, this.number, this.data));
+    }
+
+    /**
+     * Get the flag carried by this message
+     * @return Final flag for read, write and data commands, loading flag for allocate commands
+     */
+    public boolean getFlag() {
+        return this.flag;
     }
 
     /**
@@ -51,6 +167,52 @@ public class Message {
      */
     @Override
     public String toString() {
-        return "[" + this.sender + " => " + this.target + "] " + this.command.replace("|", " | ");
+        String args;
+        switch (this.command) {
+            case NEW:
+                args = " | " + this.data;
+                break;
+
+            case ALLOCATE:
+            case READ:
+                args = " | " + this.pid + " | " + this.value + " | " + this.flag;
+                break;
+
+            case SWAP_IN:
+                args = " | " + this.pid + " | " + this.flag;
+                break;
+
+            case SWAPPED_IN:
+                args = " | " + this.pid + " | " + this.value + " pages | " + this.flag;
+                break;
+
+            case FREE:
+            case PAGE_READ:
+            case PAGE_WRITTEN:
+                args = " | " + this.pid + " | " + this.value;
+                break;
+
+            case WRITE:
+                args = " | " + this.pid + " | " + this.value + " | " + this.asText() + " | " + this.flag;
+                break;
+
+            case READ_RANGE:
+                args = " | " + this.pid + " | " + this.value + " | " + (int) this.number + " blocks | " + this.flag;
+                break;
+
+            case LOAD_IMAGE:
+            case CODE:
+                args = " | " + this.pid + " | " + this.value + " | " + ((Object[]) this.data).length + " blocks | " + this.flag;
+                break;
+
+            case DATA:
+                args = " | " + this.asText() + " | " + this.flag;
+                break;
+
+            default:
+                args = " | " + this.pid;
+                break;
+        }
+        return "[" + this.sender + " => " + this.target + "] " + this.command + args;
     }
 }
@@ -0,0 +1,22 @@
+package com.cd00827.OSSimulator;
+
+/**
+ * Operations in the CPU's instruction set
+ * @author cd00827
+ */
+public enum Opcode {
+    NULL,
+    VAR,
+    ALLOC,
+    FREE,
+    EXIT,
+    JUMP,
+    JUMPIF,
+    SET,
+    OUT,
+    INC,
+    DEC,
+    MATH,
+    //Instruction that could not be decoded, executing it drops the process
+    INVALID
+}
@@ -1,6 +1,9 @@
 package com.cd00827.OSSimulator;
 
+import java.io.BufferedWriter;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Process Control Block, stores information about a process
@@ -8,27 +11,72 @@ import java.nio.file.Path;
  */
 public class PCB {
     private final int pid;
-    private int codeLength;
+    private final String label;
     private final Path codePath;
     private boolean loaded;
     private boolean swapped;
-    private final int quantum;
-    private int timeLeft;
+    private volatile boolean blocked;
+    //State as seen by the scheduler
+    private volatile ProcessState state;
+    //Queue this process is in and its neighbours in that queue, maintained by ProcessQueue
+    ProcessQueue queue;
+    PCB previous;
+    PCB next;
+    private final Program program;
+    //Map each variable slot of the program to the virtual address it was defined at
+    private int[] variables;
+    private Instruction instruction;
+    //Blocks of code read ahead of the PC, and the address of the first one
+    private Object[] prefetch;
+    private int prefetchAddress;
+    //Cache of the process' data, created by the first core to run it if caching is enabled
+    private volatile DataCache cache;
+    //Writer for the process' output file, created the first time it outputs something
+    private BufferedWriter output;
+    //Core the scheduler last dispatched this process to
+    private volatile int core;
+    //Set while a core is executing a cycle of this process, so two cores never run it at once
+    private final AtomicBoolean executing;
+    //Cycles run of the current time slice, and state kept for the fair and multi-level feedback queue policies
+    private int slice;
+    private long vruntime;
+    private int level;
+    //Where the scheduling policy has put this process in the order waiting processes will run
+    private long rank;
+    //Scheduler cycle this process was created, the cycle it last became ready to run, and the total cycles it has
+    //spent ready to run but not running
+    private final long created;
+    private long readyTime;
+    private long waitTime;
     public int pc;
 
     /**
      * Constructor
      * @param pid PID of process
      * @param codePath Path to the process' code
-     * @param quantum Number of cycles this process will run in the scheduler for
+     * @param program Program decoded from the process' code
+     * @param created Scheduler cycle the process was created
      */
-    public PCB(int pid, Path codePath, int quantum) {
+    public PCB(int pid, Path codePath, Program program, long created) {
         this.pid = pid;
+        this.label = String.valueOf(pid);
         this.codePath = codePath;
+        this.program = program;
+        this.variables = new int[program.getVariableCount()];
+        Arrays.fill(this.variables, -1);
         this.loaded = false;
         this.swapped = false;
-        this.quantum = quantum;
-        this.timeLeft = quantum;
+        this.blocked = false;
+        this.state = ProcessState.READY;
+        this.core = -1;
+        this.executing = new AtomicBoolean(false);
+        this.slice = 0;
+        this.vruntime = 0;
+        this.level = 0;
+        this.rank = 0;
+        this.created = created;
+        this.readyTime = created;
+        this.waitTime = 0;
         this.pc = 0;
     }
 
@@ -37,15 +85,7 @@ public class PCB {
      * @return Length of code
      */
     public int getCodeLength() {
-        return codeLength;
-    }
-
-    /**
-     * Set the length of this process's code
-     * @param codeLength Length of this process' code
-     */
-    public void setCodeLength(int codeLength) {
-        this.codeLength = codeLength;
+        return this.program.getLength();
     }
 
     /**
@@ -56,6 +96,14 @@ public class PCB {
         return pid;
     }
 
+    /**
+     * Get the mailbox label used to send data to this process
+     * @return PID as a string
+     */
+    public String getLabel() {
+        return this.label;
+    }
+
     /**
      * Get the path to this process' code
      * @return Path to code
@@ -79,6 +127,159 @@ public class PCB {
         return this.loaded;
     }
 
+    /**
+     * Get the decoded program this process runs
+     * @return Program
+     */
+    public Program getProgram() {
+        return this.program;
+    }
+
+    /**
+     * Define a variable
+     * @param slot Slot of the variable in the variable table
+     * @param address Virtual address of the variable
+     */
+    public void setVariable(int slot, int address) {
+        this.variables[slot] = address;
+    }
+
+    /**
+     * Get the virtual address of a variable
+     * @param slot Slot of the variable in the variable table
+     * @return Virtual address, or -1 if the variable has not been defined
+     */
+    public int getVariable(int slot) {
+        if (slot < 0) {
+            return -1;
+        }
+        return this.variables[slot];
+    }
+
+    /**
+     * Set the instruction this process is currently executing
+     * @param instruction Instruction, or null once it has finished executing
+     */
+    public void setInstruction(Instruction instruction) {
+        this.instruction = instruction;
+    }
+
+    /**
+     * Get the instruction this process is currently executing
+     * @return Instruction, or null if it has not been fetched from memory yet
+     */
+    public Instruction getInstruction() {
+        return this.instruction;
+    }
+
+    /**
+     * Set the blocks of code read ahead of the PC
+     * @param address Address of the first block
+     * @param blocks Blocks, holding decoded instructions or text
+     */
+    public void setPrefetch(int address, Object[] blocks) {
+        this.prefetchAddress = address;
+        this.prefetch = blocks;
+    }
+
+    /**
+     * Check if a block of code has been read ahead
+     * @param address Address of the block
+     * @return True if the block is in the prefetch buffer
+     */
+    public boolean isPrefetched(int address) {
+        return this.prefetch != null && address >= this.prefetchAddress && address < this.prefetchAddress + this.prefetch.length;
+    }
+
+    /**
+     * Get a block of code that has been read ahead
+     * @param address Address of the block, must be prefetched
+     * @return Contents of the block
+     */
+    public Object getPrefetched(int address) {
+        return this.prefetch[address - this.prefetchAddress];
+    }
+
+    /**
+     * Empty the prefetch buffer
+     */
+    public void clearPrefetch() {
+        this.prefetch = null;
+    }
+
+    /**
+     * Set the data cache of this process
+     * @param cache Data cache
+     */
+    public void setCache(DataCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Get the data cache of this process
+     * @return Data cache, or null if it doesn't have one
+     */
+    public DataCache getCache() {
+        return this.cache;
+    }
+
+    /**
+     * Throw away everything in this process' data cache, used when its memory moves
+     */
+    public void invalidateCache() {
+        DataCache cache = this.cache;
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * Set the writer for this process' output file
+     * @param output Writer
+     */
+    public void setOutput(BufferedWriter output) {
+        this.output = output;
+    }
+
+    /**
+     * Get the writer for this process' output file
+     * @return Writer, or null if the process hasn't output anything yet
+     */
+    public BufferedWriter getOutput() {
+        return this.output;
+    }
+
+    /**
+     * Set the core this process has been dispatched to
+     * @param core Core number
+     */
+    public void setCore(int core) {
+        this.core = core;
+    }
+
+    /**
+     * Get the core this process was last dispatched to
+     * @return Core number, or -1 if it has never run
+     */
+    public int getCore() {
+        return this.core;
+    }
+
+    /**
+     * Start executing a cycle of this process
+     * @return True if successful, false if another core is still executing it
+     */
+    public boolean acquire() {
+        return this.executing.compareAndSet(false, true);
+    }
+
+    /**
+     * Finish executing a cycle of this process
+     */
+    public void release() {
+        this.executing.set(false);
+    }
+
     /**
      * Set the swapped status of this process
      * @param status True if process is currently swapped out of memory
@@ -96,17 +297,146 @@ public class PCB {
     }
 
     /**
-     * Decrement the number of scheduler cycles remaining on this process, resetting if it hits 0
-     * @return True if 0 was reached
+     * Set the blocked status of this process
+     * @param status True if process is blocked, or the CPU has asked for it to be blocked
      */
-    public boolean decrement() {
-        this.timeLeft--;
-        if (this.timeLeft == 0) {
-            this.timeLeft = this.quantum;
-            return true;
-        }
-        else {
-            return false;
-        }
+    public void setBlocked(boolean status) {
+        this.blocked = status;
+    }
+
+    /**
+     * Check if this process is blocked
+     * @return True if blocked
+     */
+    public boolean isBlocked() {
+        return this.blocked;
+    }
+
+    /**
+     * Set the state of this process
+     * @param state State
+     */
+    public void setState(ProcessState state) {
+        this.state = state;
+    }
+
+    /**
+     * Get the state of this process
+     * @return State
+     */
+    public ProcessState getState() {
+        return this.state;
+    }
+
+    /**
+     * Get the queue this process is in
+     * @return Queue, or null if this process is running or has been dropped
+     */
+    public ProcessQueue getQueue() {
+        return this.queue;
+    }
+
+    /**
+     * Set the number of cycles run of this process' current time slice
+     * @param slice Cycles
+     */
+    public void setSlice(int slice) {
+        this.slice = slice;
+    }
+
+    /**
+     * Get the number of cycles run of this process' current time slice
+     * @return Cycles
+     */
+    public int getSlice() {
+        return this.slice;
+    }
+
+    /**
+     * Set the virtual runtime of this process, used by the fair scheduling policy
+     * @param vruntime Virtual runtime in cycles
+     */
+    public void setVruntime(long vruntime) {
+        this.vruntime = vruntime;
+    }
+
+    /**
+     * Get the virtual runtime of this process
+     * @return Virtual runtime in cycles
+     */
+    public long getVruntime() {
+        return this.vruntime;
+    }
+
+    /**
+     * Set the queue this process is in, used by the multi-level feedback queue scheduling policy
+     * @param level Queue number, 0 for the highest queue
+     */
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Get the queue this process is in
+     * @return Queue number, 0 for the highest queue
+     */
+    public int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Set where this process is in the order waiting processes will run, set by the scheduling policy
+     * @param rank Rank, processes with lower ranks run sooner
+     */
+    public void setRank(long rank) {
+        this.rank = rank;
+    }
+
+    /**
+     * Get where this process is in the order waiting processes will run
+     * @return Rank, processes with lower ranks run sooner
+     */
+    public long getRank() {
+        return this.rank;
+    }
+
+    /**
+     * Get the scheduler cycle this process was created
+     * @return Cycle
+     */
+    public long getCreated() {
+        return this.created;
+    }
+
+    /**
+     * Set the scheduler cycle this process became ready to run
+     * @param cycle Cycle
+     */
+    public void setReadyTime(long cycle) {
+        this.readyTime = cycle;
+    }
+
+    /**
+     * Get the scheduler cycle this process last became ready to run
+     * @return Cycle
+     */
+    public long getReadyTime() {
+        return this.readyTime;
+    }
+
+    /**
+     * Add to the time this process has spent ready to run but not running
+     * @param cycles Scheduler cycles
+     */
+    public void addWaitTime(long cycles) {
+        this.waitTime += cycles;
+    }
+
+    /**
+     * Get the time this process has spent ready to run but not running
+     * @return Scheduler cycles
+     */
+    public long getWaitTime() {
+        return this.waitTime;
     }
 }
@@ -0,0 +1,221 @@
+package com.cd00827.OSSimulator;
+
+import java.util.Arrays;
+
+/**
+ * Page table of a single process.<br>
+ * Processes are allocated pages from 0 upwards and free them from the most recently allocated, so the table is a
+ * growable array indexed by page number. Each page is either resident in a frame, or not resident and paged in when it
+ * is first accessed. Pages that have been written back keep a copy, either in a slot of the swap area or in the
+ * compressed swap, which is read when they are paged in again. A page being written to the swap area keeps its record
+ * until the write completes, and a page being read from it has a frame reserved until the read completes.
+ * @author cd00827
+ */
+public class PageTable {
+    //Slot values for a page with no copy, a page whose copy is held in the compressed swap, and a page whose copy is
+    //being written to the swap area
+    public static final int NONE = -1;
+    public static final int COMPRESSED = -2;
+    public static final int WRITING = -3;
+
+    private int[] frames;
+    private boolean[] transit;
+    private int[] slots;
+    private SwapWorker.Request[] writes;
+    private boolean[] evicted;
+    private int size;
+    private int resident;
+
+    /**
+     * Constructor
+     */
+    public PageTable() {
+        this.frames = new int[4];
+        this.transit = new boolean[4];
+        this.slots = new int[4];
+        this.writes = new SwapWorker.Request[4];
+        this.evicted = new boolean[4];
+        this.size = 0;
+        this.resident = 0;
+    }
+
+    /**
+     * Get the frame a page is mapped to
+     * @param page Page number
+     * @return Frame offset, or -1 if the page is not mapped or not resident
+     */
+    public int get(int page) {
+        if (page < 0 || page >= this.size || this.transit[page]) {
+            return -1;
+        }
+        return this.frames[page];
+    }
+
+    /**
+     * Check if a page is mapped, whether or not it is resident
+     * @param page Page number
+     * @return True if the process may access the page
+     */
+    public boolean isMapped(int page) {
+        return page >= 0 && page < this.size;
+    }
+
+    /**
+     * Map the next page, it is not resident until it is first accessed
+     */
+    public void add() {
+        if (this.size == this.frames.length) {
+            this.frames = Arrays.copyOf(this.frames, this.size * 2);
+            this.transit = Arrays.copyOf(this.transit, this.size * 2);
+            this.slots = Arrays.copyOf(this.slots, this.size * 2);
+            this.writes = Arrays.copyOf(this.writes, this.size * 2);
+            this.evicted = Arrays.copyOf(this.evicted, this.size * 2);
+        }
+        this.frames[this.size] = -1;
+        this.transit[this.size] = false;
+        this.slots[this.size] = NONE;
+        this.writes[this.size] = null;
+        this.evicted[this.size] = false;
+        this.size++;
+    }
+
+    /**
+     * Unmap the most recently mapped page
+     * @return Frame offset it was resident in or reserved for it, or -1 if it was neither
+     */
+    public int removeLast() {
+        int frame = this.frames[--this.size];
+        if (frame >= 0 && !this.transit[this.size]) {
+            this.resident--;
+        }
+        return frame;
+    }
+
+    /**
+     * Reserve a frame for a page that is being read from the swap area, it is not resident until it is loaded
+     * @param page Page number
+     * @param frame Frame offset the page is being read into
+     */
+    public void reserve(int page, int frame) {
+        this.frames[page] = frame;
+        this.transit[page] = true;
+    }
+
+    /**
+     * Check if a page is being read from the swap area
+     * @param page Page number
+     * @return True if a frame is reserved for the page
+     */
+    public boolean isInTransit(int page) {
+        return this.transit[page];
+    }
+
+    /**
+     * Make a page resident
+     * @param page Page number
+     * @param frame Frame offset the page has been loaded into
+     */
+    public void load(int page, int frame) {
+        this.frames[page] = frame;
+        this.transit[page] = false;
+        this.resident++;
+    }
+
+    /**
+     * Make a page non-resident
+     * @param page Page number
+     */
+    public void evict(int page) {
+        this.frames[page] = -1;
+        this.evicted[page] = true;
+        this.resident--;
+    }
+
+    /**
+     * Check if a page has ever been evicted
+     * @param page Page number
+     * @return True if the page has been evicted since it was allocated
+     */
+    public boolean isEvicted(int page) {
+        return this.evicted[page];
+    }
+
+    /**
+     * Check if a page has a copy that must be read when it is paged in
+     * @param page Page number
+     * @return True if the page has been written back
+     */
+    public boolean hasCopy(int page) {
+        return this.slots[page] != NONE;
+    }
+
+    /**
+     * Get the swap slot holding the copy of a page
+     * @param page Page number
+     * @return First slot of the page's record in the swap area, COMPRESSED if the copy is in the compressed swap, WRITING
+     * if it is being written to the swap area, or NONE if the page has never been written back
+     */
+    public int getSlot(int page) {
+        return this.slots[page];
+    }
+
+    /**
+     * Set the swap slot holding the copy of a page
+     * @param page Page number
+     * @param slot First slot of the page's record in the swap area, COMPRESSED or NONE
+     */
+    public void setSlot(int page, int slot) {
+        this.slots[page] = slot;
+        this.writes[page] = null;
+    }
+
+    /**
+     * Get the write in flight for a page
+     * @param page Page number
+     * @return The request writing the page to the swap area, or null if the page is not being written
+     */
+    public SwapWorker.Request getWrite(int page) {
+        return this.writes[page];
+    }
+
+    /**
+     * Record that a page is being written to the swap area
+     * @param page Page number
+     * @param write The request writing the page
+     */
+    public void setWrite(int page, SwapWorker.Request write) {
+        this.slots[page] = WRITING;
+        this.writes[page] = write;
+    }
+
+    /**
+     * Get the number of pages mapped
+     * @return Pages
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get the number of pages resident in memory
+     * @return Resident pages
+     */
+    public int getResident() {
+        return this.resident;
+    }
+
+    /**
+     * Get the frames of the pages resident in memory
+     * @param frames Array to fill with frame offsets, at least as long as the number of resident pages
+     * @return Number of frames filled
+     */
+    public int getResidentFrames(int[] frames) {
+        int count = 0;
+        for (int page = 0; page < this.size && count < this.resident; page++) {
+            if (this.frames[page] >= 0 && !this.transit[page]) {
+                frames[count++] = this.frames[page];
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,60 @@
+package com.cd00827.OSSimulator;
+
+/**
+ * Allocates PIDs in constant time.<br>
+ * New PIDs are counted up from 0, and released PIDs are kept in a queue and reused oldest first. The scheduler only
+ * releases the PID of a dropped process once the MMU and swap worker have finished with it and its mailbox channel has
+ * been emptied, so messages about a dropped process are never mistaken for messages about a new process given the same
+ * PID.
+ * @author cd00827
+ */
+public class PidAllocator {
+    //Circular queue of released PIDs, oldest first
+    private int[] free;
+    private int head;
+    private int count;
+    //Lowest PID that has never been allocated
+    private int next;
+
+    /**
+     * Constructor
+     */
+    public PidAllocator() {
+        this.free = new int[16];
+        this.head = 0;
+        this.count = 0;
+        this.next = 0;
+    }
+
+    /**
+     * Allocate a PID, reusing the oldest released PID if there is one
+     * @return PID
+     */
+    public int allocate() {
+        if (this.count > 0) {
+            int pid = this.free[this.head];
+            this.head = (this.head + 1) % this.free.length;
+            this.count--;
+            return pid;
+        }
+        return this.next++;
+    }
+
+    /**
+     * Release a PID so it can be reused
+     * @param pid PID
+     */
+    public void release(int pid) {
+        if (this.count == this.free.length) {
+            //Unwrap the queue into a bigger array
+            int[] free = new int[this.count * 2];
+            for (int i = 0; i < this.count; i++) {
+                free[i] = this.free[(this.head + i) % this.count];
+            }
+            this.free = free;
+            this.head = 0;
+        }
+        this.free[(this.head + this.count) % this.free.length] = pid;
+        this.count++;
+    }
+}
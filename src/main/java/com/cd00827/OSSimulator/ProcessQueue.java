@@ -0,0 +1,143 @@
+package com.cd00827.OSSimulator;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Queue of processes, linked through the processes themselves.<br>
+ * Each process holds links to the processes either side of it and the queue it is in, so it can only be in one queue at
+ * a time, and adding, removing and checking membership never have to search the queue. Adding a process to a queue
+ * moves it out of any other queue it was in, and sets its state to the state of the new queue. Only used by the
+ * scheduler thread, so is not thread safe.
+ * @author cd00827
+ */
+public class ProcessQueue implements Iterable<PCB> {
+    private final ProcessState state;
+    private PCB head;
+    private PCB tail;
+    private int size;
+
+    /**
+     * Constructor
+     * @param state State of processes in this queue
+     */
+    public ProcessQueue(ProcessState state) {
+        this.state = state;
+        this.head = null;
+        this.tail = null;
+        this.size = 0;
+    }
+
+    /**
+     * Add a process to the back of this queue, removing it from any queue it is already in
+     * @param process Process
+     */
+    public void add(PCB process) {
+        if (process.queue != null) {
+            process.queue.remove(process);
+        }
+        process.queue = this;
+        process.previous = this.tail;
+        process.next = null;
+        if (this.tail == null) {
+            this.head = process;
+        }
+        else {
+            this.tail.next = process;
+        }
+        this.tail = process;
+        this.size++;
+        process.setState(this.state);
+    }
+
+    /**
+     * Remove the process at the front of this queue
+     * @return Process, or null if this queue is empty
+     */
+    public PCB poll() {
+        PCB process = this.head;
+        if (process != null) {
+            this.remove(process);
+        }
+        return process;
+    }
+
+    /**
+     * Remove a process from this queue. Its state is left for the caller to change
+     * @param process Process
+     * @return True if the process was in this queue
+     */
+    public boolean remove(PCB process) {
+        if (process == null || process.queue != this) {
+            return false;
+        }
+        if (process.previous == null) {
+            this.head = process.next;
+        }
+        else {
+            process.previous.next = process.next;
+        }
+        if (process.next == null) {
+            this.tail = process.previous;
+        }
+        else {
+            process.next.previous = process.previous;
+        }
+        process.queue = null;
+        process.previous = null;
+        process.next = null;
+        this.size--;
+        return true;
+    }
+
+    /**
+     * Check if a process is in this queue
+     * @param process Process
+     * @return True if the process is in this queue
+     */
+    public boolean contains(PCB process) {
+        return process != null && process.queue == this;
+    }
+
+    /**
+     * Check if this queue is empty
+     * @return True if empty
+     */
+    public boolean isEmpty() {
+        return this.head == null;
+    }
+
+    /**
+     * Get the number of processes in this queue
+     * @return Size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Iterate over this queue from front to back. The queue must not be changed while iterating
+     * @return Iterator
+     */
+    @Override
+    public Iterator<PCB> iterator() {
+        return new Iterator<PCB>() {
+            private PCB next = ProcessQueue.this.head;
+
+            @Override
+            public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override
+            public PCB next() {
+                if (this.next == null) {
+                    throw new NoSuchElementException();
+                }
+                PCB process = this.next;
+                this.next = process.next;
+                return process;
+            }
+        };
+    }
+}
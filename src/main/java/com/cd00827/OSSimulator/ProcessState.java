@@ -0,0 +1,23 @@
+package com.cd00827.OSSimulator;
+
+/**
+ * States a process can be in, as seen by the scheduler. Processes that are READY or PRIORITY are held by the scheduling
+ * policy, and each other state apart from RUNNING and DROPPED has its own queue
+ * @author cd00827
+ */
+public enum ProcessState {
+    //Waiting for the scheduling policy to choose it
+    READY,
+    //Waiting to be run before any process that is READY
+    PRIORITY,
+    //Running on a core
+    RUNNING,
+    //Waiting for the MMU to complete a request
+    BLOCKED,
+    //Waiting for the MMU to swap it in
+    SWAPPING,
+    //Waiting for memory to be allocated for its code
+    LOADING,
+    //Removed from the scheduler
+    DROPPED
+}
@@ -0,0 +1,90 @@
+package com.cd00827.OSSimulator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A program decoded from an input file, ready to be loaded into memory
+ * @author cd00827
+ */
+public class Program {
+    private final Instruction[] code;
+    private final Map<String, Integer> labels;
+    private final Map<String, Integer> variables;
+
+    /**
+     * Constructor, decodes every line of a program
+     * @param lines Lines of the program
+     */
+    public Program(List<String> lines) {
+        this.code = new Instruction[lines.size()];
+        this.labels = new HashMap<>();
+        this.variables = new HashMap<>();
+
+        //Find labels and variable names first, so they can be resolved by instructions before their definitions
+        for (int i = 0; i < this.code.length; i++) {
+            String[] split = lines.get(i).split(":", 2);
+            if (split.length == 2) {
+                this.labels.put(split[0], i);
+            }
+            String[] tokens = split[split.length - 1].split("\\s");
+            if (tokens[0].equals("var") && tokens.length > 1) {
+                this.variables.putIfAbsent(tokens[1], this.variables.size());
+            }
+        }
+
+        //Decode instructions, empty lines are left empty
+        for (int i = 0; i < this.code.length; i++) {
+            if (!lines.get(i).equals("")) {
+                this.code[i] = new Instruction(lines.get(i), this.labels, this.variables);
+            }
+        }
+    }
+
+    /**
+     * Get the decoded instructions of this program
+     * @return Instructions, with null for empty lines
+     */
+    public Instruction[] getCode() {
+        return this.code;
+    }
+
+    /**
+     * Get the number of lines in this program
+     * @return Length of code
+     */
+    public int getLength() {
+        return this.code.length;
+    }
+
+    /**
+     * Get the number of variables this program declares
+     * @return Size of the variable table needed to run this program
+     */
+    public int getVariableCount() {
+        return this.variables.size();
+    }
+
+    /**
+     * Get the instruction held in a block of memory.<br>
+     * Blocks normally hold the decoded instruction, but may hold its text if they have been swapped out and back in,
+     * or anything else if the process has written over its own code.
+     * @param pc Address the block was read from
+     * @param block Contents of the block
+     * @return Instruction
+     */
+    public Instruction decode(int pc, Object block) {
+        if (block == null) {
+            return Instruction.EMPTY;
+        }
+        if (block instanceof Instruction) {
+            return (Instruction) block;
+        }
+        String line = block.toString();
+        if (pc >= 0 && pc < this.code.length && this.code[pc] != null && this.code[pc].toString().equals(line)) {
+            return this.code[pc];
+        }
+        return new Instruction(line, this.labels, this.variables);
+    }
+}
@@ -0,0 +1,127 @@
+package com.cd00827.OSSimulator;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Page replacement policy used by the MMU to choose which resident page to evict when memory is full.<br>
+ * Policies work on frame numbers. The MMU tells the policy when a page is loaded into a frame and every time a frame is
+ * accessed, and asks it for a victim when it needs a free frame. Each policy counts the pages it evicts and the page
+ * faults on pages it evicted earlier, so policies can be compared by how much swap traffic they cause.
+ * @author cd00827
+ */
+public abstract class ReplacementPolicy {
+    //Names of the available policies, in the order they are offered to the user
+    public static final String[] NAMES = {"CLOCK", "LRU", "Second chance", "FIFO"};
+
+    private long evictions;
+    private long refaults;
+
+    /**
+     * Create a policy by name
+     * @param name One of NAMES
+     * @param frames Number of frames of physical memory
+     * @return Policy
+     * @throws IllegalArgumentException If the name is not a policy
+     */
+    public static ReplacementPolicy of(String name, int frames) {
+        switch (name) {
+            case "CLOCK":
+                return new ClockPolicy(frames);
+
+            case "LRU":
+                return new LRUPolicy(frames);
+
+            case "Second chance":
+                return new SecondChancePolicy(frames);
+
+            case "FIFO":
+                return new FIFOPolicy(frames);
+
+            default:
+                throw new IllegalArgumentException("Invalid replacement policy: " + name);
+        }
+    }
+
+    /**
+     * Called when a page is loaded into a frame
+     * @param frame Frame number
+     */
+    public abstract void loaded(int frame);
+
+    /**
+     * Called when a frame is read or written
+     * @param frame Frame number
+     */
+    public abstract void accessed(int frame);
+
+    /**
+     * Choose a frame to evict
+     * @param candidate Test for the frames that may be evicted
+     * @return Frame number, or -1 if no frame passes the test
+     */
+    protected abstract int choose(IntPredicate candidate);
+
+    /**
+     * Choose a frame to evict out of a list of frames, without looking at any other frame
+     * @param frames Frames that may be evicted
+     * @param count Number of frames in the list
+     * @return Frame number, or -1 if the list is empty
+     */
+    protected abstract int choose(int[] frames, int count);
+
+    /**
+     * Get the name of this policy
+     * @return One of NAMES
+     */
+    public abstract String getName();
+
+    /**
+     * Choose a frame to evict, counting the eviction
+     * @param candidate Test for the frames that may be evicted
+     * @return Frame number, or -1 if no frame passes the test
+     */
+    public int victim(IntPredicate candidate) {
+        int frame = this.choose(candidate);
+        if (frame >= 0) {
+            this.evictions++;
+        }
+        return frame;
+    }
+
+    /**
+     * Choose a frame to evict out of a list of frames, counting the eviction
+     * @param frames Frames that may be evicted
+     * @param count Number of frames in the list
+     * @return Frame number, or -1 if the list is empty
+     */
+    public int victim(int[] frames, int count) {
+        int frame = this.choose(frames, count);
+        if (frame >= 0) {
+            this.evictions++;
+        }
+        return frame;
+    }
+
+    /**
+     * Count a page fault on a page this policy evicted earlier
+     */
+    public void refault() {
+        this.refaults++;
+    }
+
+    /**
+     * Get the number of pages this policy has evicted
+     * @return Evictions
+     */
+    public long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Get the number of page faults on pages this policy evicted earlier
+     * @return Re-faults
+     */
+    public long getRefaults() {
+        return this.refaults;
+    }
+}
@@ -0,0 +1,93 @@
+package com.cd00827.OSSimulator;
+
+/**
+ * Round robin scheduling, runs processes in turn for a fixed time slice each.<br>
+ * Unblocked processes are run before processes waiting for their next turn, so processes that block spend as little
+ * time as possible holding up whatever they are waiting for.
+ * @author cd00827
+ */
+public class RoundRobinPolicy extends SchedulingPolicy {
+    private final int quantum;
+    private final ProcessQueue mainQueue;
+
+    /**
+     * Constructor
+     * @param quantum Number of cycles in a time slice
+     */
+    public RoundRobinPolicy(int quantum) {
+        this.quantum = quantum;
+        this.mainQueue = new ProcessQueue(ProcessState.READY);
+        this.order(this.mainQueue);
+    }
+
+    /**
+     * Add a process to the back of the main queue
+     * @param process Process
+     */
+    @Override
+    public void add(PCB process) {
+        process.setRank(this.sequence());
+        this.mainQueue.add(process);
+    }
+
+    /**
+     * Send a preempted process to the back of the main queue
+     * @param process Process
+     */
+    @Override
+    public void preempt(PCB process) {
+        this.add(process);
+    }
+
+    /**
+     * Run an unblocked process before any process in the main queue
+     * @param process Process
+     */
+    @Override
+    public void wake(PCB process) {
+        this.requeue(process);
+    }
+
+    /**
+     * Count a cycle of a process' time slice. A process that blocks keeps what is left of its time slice for the next
+     * time it runs
+     * @param process Process
+     * @return True if the process has used up its time slice
+     */
+    @Override
+    public boolean tick(PCB process) {
+        process.setSlice(process.getSlice() + 1);
+        if (process.getSlice() == this.quantum) {
+            process.setSlice(0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Choose the process at the front of the main queue
+     * @return Process, or null if the main queue is empty
+     */
+    @Override
+    protected PCB choose() {
+        return this.mainQueue.poll();
+    }
+
+    /**
+     * Remove a process from the main queue
+     * @param process Process
+     */
+    @Override
+    protected void forget(PCB process) {
+        this.mainQueue.remove(process);
+    }
+
+    /**
+     * Get the name of this policy
+     * @return Name shown to the user
+     */
+    @Override
+    public String getName() {
+        return "Round robin";
+    }
+}
@@ -3,63 +3,126 @@ package com.cd00827.OSSimulator;
 import javafx.application.Platform;
 import javafx.collections.ObservableList;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
 
 /**
- * Process scheduler, uses a combination of round robin and priority scheduling to schedule the execution of
- * multiple processes concurrently
+ * Process scheduler, schedules the execution of multiple processes concurrently.<br>
+ * Processes that are ready to run are held by a scheduling policy, which chooses the next process to run and when to
+ * preempt a running process. Each CPU core has its own running slot, and idle cores are given the next process the
+ * policy chooses. The turnaround time and time spent waiting to run of each process are recorded when it is dropped, so
+ * policies can be compared on the same workload.<br>
+ * With lookahead enabled, swapped out processes near the front of the queues are prefetched, so they are already swapped
+ * in by the time a core is given them rather than the core idling while they are swapped in.
  * @author cd00827
  **/
 public class Scheduler implements Runnable {
-    private final Deque<PCB> mainQueue;
-    private final Deque<PCB> priorityQueue;
-    private final Deque<PCB> blockedQueue;
-    private final Deque<PCB> swapQueue;
-    private final Deque<PCB> loadingQueue;
-    private PCB running;
-    private final Map<Integer, PCB> processes;
+    //Each process is either held by the policy or in at most one queue, which its state says
+    private final SchedulingPolicy policy;
+    private final ProcessQueue blockedQueue;
+    private final ProcessQueue swapQueue;
+    private final ProcessQueue loadingQueue;
+    //Process running on each core
+    private final AtomicReferenceArray<PCB> running;
+    //Processes indexed by PID, null for PIDs not in use
+    private PCB[] processes;
+    private final PidAllocator pids;
+    private long cycle;
 
     private final Mailbox mailbox;
-    private final double clockSpeed;
-    private final int quantum;
+    private final Clock clock;
     private final ObservableList<String> log;
-    private final ReentrantLock swapLock;
-    private final SynchronousQueue<PCB> blockRendezvous;
-    private final List<PCB> swappable;
+    private final Queue<PCB> blockRequests;
+    //Processes the MMU should prefer to evict pages of
+    private final SwappableSet swappable;
+    //Number of queued processes to look at for prefetching, 0 to disable it
+    private final int lookahead;
+    //Processes a prefetch has been requested for since they were last swapped out, and those whose prefetch is in flight
+    private final Set<PCB> prefetched;
+    private final Set<PCB> prefetching;
+    private long prefetches;
+    //Number of cycles cores have spent idle while a process was being swapped in
+    private long swapWaitCycles;
+    //Cycles from creation to being dropped, and cycles spent ready to run but not running, of each dropped process
+    private final Distribution turnaround;
+    private final Distribution waitTime;
 
     /**
      * Constructor
-     * @param clockSpeed Number of operations this scheduler should perform per second
+     * @param clock Clock to pace this scheduler with
      * @param mailbox The mailbox to control this scheduler with
-     * @param quantum Number of cycles before switching to another process
+     * @param policy Policy to choose which process to run next with
+     * @param cores Number of CPU cores to schedule processes on
      * @param log Log to output messages to
-     * @param swapLock Lock used for synchronising the scheduler and MMU when swapping
-     * @param swappable List to store currently swappable processes in
+     * @param swappable Set to keep the processes the MMU should prefer to evict pages of in
+     * @param lookahead Number of queued processes to look at for prefetching, 0 to disable it
      */
-    public Scheduler(double clockSpeed, Mailbox mailbox, int quantum, ObservableList<String> log, ReentrantLock swapLock, List<PCB> swappable) {
-        this.clockSpeed = clockSpeed;
+    public Scheduler(Clock clock, Mailbox mailbox, SchedulingPolicy policy, int cores, ObservableList<String> log, SwappableSet swappable, int lookahead) {
+        this.clock = clock;
         this.mailbox = mailbox;
-        this.quantum = quantum;
-        this.mainQueue = new ArrayDeque<>();
-        this.priorityQueue = new ArrayDeque<>();
-        this.blockedQueue = new ArrayDeque<>();
-        this.swapQueue = new ArrayDeque<>();
-        this.loadingQueue = new ArrayDeque<>();
-        this.running = null;
-        this.processes = new HashMap<>();
+        this.policy = policy;
+        this.blockedQueue = new ProcessQueue(ProcessState.BLOCKED);
+        this.swapQueue = new ProcessQueue(ProcessState.SWAPPING);
+        this.loadingQueue = new ProcessQueue(ProcessState.LOADING);
+        this.running = new AtomicReferenceArray<>(cores);
+        this.processes = new PCB[16];
+        this.pids = new PidAllocator();
+        this.cycle = 0;
         this.log = log;
-        this.swapLock = swapLock;
         this.swappable = swappable;
-        this.blockRendezvous = new SynchronousQueue<>();
+        this.blockRequests = new ConcurrentLinkedQueue<>();
+        this.lookahead = lookahead;
+        this.prefetched = new HashSet<>();
+        this.prefetching = new HashSet<>();
+        this.prefetches = 0;
+        this.swapWaitCycles = 0;
+        this.turnaround = new Distribution();
+        this.waitTime = new Distribution();
+    }
+
+    /**
+     * Get the policy used to choose which process to run next
+     * @return Scheduling policy
+     */
+    public SchedulingPolicy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * Get the turnaround times of dropped processes
+     * @return Cycles from each process being created to it being dropped
+     */
+    public Distribution getTurnaround() {
+        return this.turnaround;
+    }
+
+    /**
+     * Get the wait times of dropped processes
+     * @return Cycles each process spent ready to run but not running
+     */
+    public Distribution getWaitTime() {
+        return this.waitTime;
+    }
+
+    /**
+     * Get the number of prefetches requested
+     * @return Prefetches
+     */
+    public long getPrefetches() {
+        return this.prefetches;
+    }
+
+    /**
+     * Get the number of cycles cores have spent idle while a process they could have run was being swapped in
+     * @return Cycles, counted once per idle core per scheduler cycle
+     */
+    public long getSwapWaitCycles() {
+        return this.swapWaitCycles;
     }
 
     /**
@@ -71,27 +134,112 @@ public class Scheduler implements Runnable {
     }
 
     /**
-     * Get a reference to the currently running process
-     * @return Currently running process
+     * Get a process by its PID
+     * @param pid PID
+     * @return Process, or null if no process has the PID
+     */
+    private PCB getProcess(int pid) {
+        if (pid < 0 || pid >= this.processes.length) {
+            return null;
+        }
+        return this.processes[pid];
+    }
+
+    /**
+     * Take a process out of the policy or whichever queue it is in
+     * @param process Process
+     */
+    private void detach(PCB process) {
+        if (process.getState() == ProcessState.READY || process.getState() == ProcessState.PRIORITY) {
+            this.policy.remove(process);
+        }
+        else if (process.getQueue() != null) {
+            process.getQueue().remove(process);
+        }
+    }
+
+    /**
+     * Move a process to the back of a queue, out of the policy or any other queue it is in
+     * @param process Process
+     * @param queue Queue
+     */
+    private void move(PCB process, ProcessQueue queue) {
+        this.detach(process);
+        queue.add(process);
+        this.updateSwappable(process);
+    }
+
+    /**
+     * Hand a process that is ready to run to the policy, out of any queue it is in
+     * @param process Process
+     * @param event Policy method saying why the process is ready to run
      */
-    public PCB getRunning() {
-        return this.running;
+    private void ready(PCB process, Consumer<PCB> event) {
+        this.detach(process);
+        event.accept(process);
+        process.setReadyTime(this.cycle);
+        this.updateSwappable(process);
+    }
+
+    /**
+     * Add a process to the swappable set or remove it from it after its state or rank changes. Processes that are held by
+     * the policy, are loaded and are not swapped out or blocked are swappable, ordered by the policy's rank
+     * @param process Process
+     */
+    private void updateSwappable(PCB process) {
+        ProcessState state = process.getState();
+        if ((state == ProcessState.READY || state == ProcessState.PRIORITY) && process.isLoaded() && !process.isSwapped() && !process.isBlocked()) {
+            this.swappable.add(process, process.getRank());
+        }
+        else {
+            this.swappable.remove(process);
+        }
     }
 
     /**
-     * Block a specified process, used by the CPU to block it's current process.
-     * This is the only scheduler operation not accessed through the mailbox, as it must be executed immediately,
-     * or the CPU must wait for it to execute so that it doesn't reacquire a process it has blocked if the scheduler has
-     * a backlog of commands to execute.
+     * Get a reference to the process running on a core
+     * @param core Core number
+     * @return Process running on the core
+     */
+    public PCB getRunning(int core) {
+        return this.running.get(core);
+    }
+
+    /**
+     * Remove a process from whichever core is running it
+     * @param process Process to remove
+     */
+    private void stop(PCB process) {
+        if (process.getState() == ProcessState.RUNNING) {
+            this.running.compareAndSet(process.getCore(), process, null);
+        }
+    }
+
+    /**
+     * Block a specified process, used by the CPU cores to block their current process.
+     * This is the only scheduler operation not accessed through the mailbox, as it must be seen immediately so that the
+     * CPU doesn't reacquire a process it has blocked if the scheduler has a backlog of commands to execute.
+     * The process is marked as blocked straight away, and moved to the blocked queue on the scheduler's next cycle.
+     * The CPU must block a process before sending the request that will unblock it, so that the scheduler always
+     * sees the block before the unblock.
      * @param process Process to block
      */
     public void block(PCB process) {
-        try {
-            this.blockRendezvous.put(process);
-        }
-        catch (InterruptedException e) {
-            this.log("[SCHEDULER/ERROR] Block operation interrupted");
+        process.setBlocked(true);
+        this.blockRequests.add(process);
+    }
+
+    /**
+     * Check if the scheduler has nothing to do until it receives a command
+     * @return True if no process is running, waiting to run or being swapped in
+     */
+    private boolean isIdle() {
+        for (int core = 0; core < this.running.length(); core++) {
+            if (this.running.get(core) != null) {
+                return false;
+            }
         }
+        return this.policy.isEmpty() && this.swapQueue.isEmpty() && this.blockRequests.isEmpty();
     }
 
     /**
@@ -100,124 +248,165 @@ public class Scheduler implements Runnable {
     @Override
     public void run() {
         while (true) {
-            //Acquire swap lock - MMU cannot swap out processes until lock is released
-            //If MMU is currently swapping out processes, wait for it to complete
-            this.swapLock.lock();
+            //Wait for next clock cycle. If there is nothing to schedule, sleep until a command arrives instead of
+            //waking every cycle
+            Message message = null;
+            try {
+                if (this.isIdle()) {
+                    this.clock.idle();
+                    message = this.mailbox.receive(Mailbox.SCHEDULER);
+                }
+                this.clock.await();
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            this.cycle++;
 
             //Get next command
-            Message message = this.mailbox.get(Mailbox.SCHEDULER);
+            if (message == null) {
+                message = this.mailbox.get(Mailbox.SCHEDULER);
+            }
             if (message != null) {
-                String[] command = message.getCommand();
-                switch(command[0]) {
+                switch(message.getCommand()) {
                     //new [path]
-                    case "new": {
-                        Path path = Path.of(command[1]);
-                        int pid = 0;
-                        while(this.processes.containsKey(pid)) {
-                            pid++;
+                    case NEW: {
+                        Path path = (Path) message.getData();
+                        //Read and decode the program once, everything else uses the decoded copy
+                        Program program;
+                        try {
+                            program = new Program(Files.readAllLines(path));
+                        }
+                        catch (IOException e) {
+                            e.printStackTrace();
+                            this.log("[SCHEDULER/ERROR] Could not read " + path);
+                            break;
+                        }
+                        int pid = this.pids.allocate();
+                        if (pid == this.processes.length) {
+                            this.processes = Arrays.copyOf(this.processes, pid * 2);
                         }
-                        PCB process = new PCB(pid, path, this.quantum);
-                        this.processes.put(pid, process);
-                        this.mainQueue.add(process);
+                        PCB process = new PCB(pid, path, program, this.cycle);
+                        this.processes[pid] = process;
+                        this.ready(process, this.policy::add);
                         this.log("[SCHEDULER] Created PID " + pid + " from " + path);
                     }
                     break;
 
                     //allocated [pid]
-                    case "allocated": {
-                        int pid = Integer.parseInt(command[1]);
-                        PCB process = this.processes.get(pid);
-                        try {
-                            //Load process code into memory
-                            BufferedReader reader = new BufferedReader(new FileReader(new File(String.valueOf(process.getCodePath()))));
-                            for (int i = 0; i < process.getCodeLength(); i++) {
-                                String line = reader.readLine();
-                                if (!line.equals("")) {
-                                    if (i == process.getCodeLength() - 1) {
-                                        //Signal final write operation
-                                        this.mailbox.put(Mailbox.SCHEDULER, Mailbox.MMU, "write|" + pid + "|" + i +  "|" + line + "|true");
-                                    }
-                                    else {
-                                        this.mailbox.put(Mailbox.SCHEDULER, Mailbox.MMU, "write|" + pid + "|" + i +  "|" + line + "|false");
-                                    }
-                                }
-                            }
-                            reader.close();
-                            //Move process from loading queue to blocked queue
-                            this.loadingQueue.remove(process);
-                            this.blockedQueue.add(process);
-                            process.setLoaded();
-                            this.log("[SCHEDULER] Successfully loaded PID "+ pid);
-                        }
-                        catch (IOException e) {
-                            e.printStackTrace();
-                        }
+                    case ALLOCATED: {
+                        int pid = message.getPid();
+                        PCB process = this.getProcess(pid);
+                        //Load process code into memory in one operation, empty lines are left empty
+                        this.mailbox.put(Mailbox.SCHEDULER, Mailbox.MMU, Command.LOAD_IMAGE, pid, 0, process.getProgram().getCode(), true);
+                        //Move process from loading queue to blocked queue
+                        process.setBlocked(true);
+                        this.move(process, this.blockedQueue);
+                        process.setLoaded();
+                        this.log("[SCHEDULER] Successfully loaded PID "+ pid);
                     }
                     break;
 
                     //swappedIn [pid]
-                    case "swappedIn": {
-                        int pid = Integer.parseInt(command[1]);
-                        PCB process = this.processes.get(pid);
+                    case SWAPPED_IN: {
+                        int pid = message.getPid();
+                        PCB process = this.getProcess(pid);
+                        //The process may have been dropped while it was being swapped in
+                        if (process == null) {
+                            break;
+                        }
+                        this.prefetching.remove(process);
+                        //A prefetched process stays where it is in the policy. If nothing could be loaded it is left
+                        //swapped out, and may be prefetched again once frames are free
+                        if (this.swapQueue.contains(process)) {
+                            this.ready(process, this.policy::requeue);
+                        }
+                        else if (message.getValue() == 0) {
+                            this.prefetched.remove(process);
+                            break;
+                        }
                         process.setSwapped(false);
-                        this.swapQueue.remove(process);
-                        this.priorityQueue.add(process);
+                        process.invalidateCache();
+                        this.updateSwappable(process);
                         this.log("[SCHEDULER] Marked PID " + pid + " as swapped in");
                     }
                     break;
 
                     //swappedOut [pid]
-                    case "swappedOut": {
-                        int pid = Integer.parseInt(command[1]);
-                        this.processes.get(pid).setSwapped(true);
+                    case SWAPPED_OUT: {
+                        int pid = message.getPid();
+                        PCB process = this.getProcess(pid);
+                        if (process == null) {
+                            break;
+                        }
+                        process.setSwapped(true);
+                        process.invalidateCache();
+                        this.updateSwappable(process);
+                        this.prefetched.remove(process);
                         this.log("[SCHEDULER] Marked PID " + pid + " as swapped out");
                     }
                     break;
 
-
+                    //dropped [pid]
+                    case DROPPED: {
+                        int pid = message.getPid();
+                        //Nothing more will be sent about the dropped process, so throw away anything left for it and
+                        //let a new process have its PID
+                        this.mailbox.clear(String.valueOf(pid));
+                        this.pids.release(pid);
+                        this.log("[SCHEDULER] Released PID " + pid);
+                    }
+                    break;
                 }
             }
 
-            //Round robin
-            //If there's a running process, decrement it's quantum and switch process if needed
-            if (this.running != null) {
-                //Decrement quantum
-                if(this.running.decrement()) {
-                    //Send previous to back of queue
-                    this.mainQueue.add(this.running);
-                    //Set running to null to prevent processes duplicating
-                    this.running = null;
-                    this.switchProcess();
+            //Schedule each core
+            for (int core = 0; core < this.running.length(); core++) {
+                //If there's a running process, count a cycle of its time slice and switch process if needed
+                PCB running = this.running.get(core);
+                if (running != null) {
+                    if (this.policy.tick(running)) {
+                        //Set running to null to prevent processes duplicating, then hand previous back to the policy
+                        this.running.set(core, null);
+                        this.ready(running, this.policy::preempt);
+                        this.switchProcess(core);
+                    }
+                }
+                //Otherwise attempt to run a process
+                else {
+                    this.switchProcess(core);
                 }
             }
-            //Otherwise attempt to run a process
-            else {
-                this.switchProcess();
+            //Rerank any waiting processes the policy has moved
+            if (this.policy.rebalance()) {
+                for (PCB process : this.policy) {
+                    this.updateSwappable(process);
+                }
             }
 
-            //Update list of swappable processes
-            this.swappable.clear();
-            List<PCB> bothQueues = new ArrayList<>();
-            bothQueues.addAll(this.mainQueue);
-            bothQueues.addAll(this.priorityQueue);
-
-            for (PCB process : bothQueues) {
-                if (process.isLoaded() && !process.isSwapped()) {
-                    this.swappable.add(process);
+            //Count cores left idle while a process is being swapped in, then look for processes to prefetch
+            if (!this.swapQueue.isEmpty()) {
+                for (int core = 0; core < this.running.length(); core++) {
+                    if (this.running.get(core) == null) {
+                        this.swapWaitCycles++;
+                    }
                 }
             }
+            if (this.lookahead > 0) {
+                this.prefetch();
+            }
 
-            //Allow the CPU to block it's process, must happen after scheduling but before swapping otherwise MMU may attempt
-            //to swap out a process that the scheduler has just switched from, but that the CPU still wants to block
+            //Block processes the CPU has asked to block, must happen after scheduling so a process the scheduler has just
+            //switched from ends up blocked rather than queued
             {
-                PCB process = this.blockRendezvous.poll();
-                if (process != null) {
-                    if (this.running == process) {
-                        this.running = null;
+                PCB process;
+                while ((process = this.blockRequests.poll()) != null) {
+                    //Ignore processes dropped since the CPU blocked them
+                    if (this.getProcess(process.getPid()) != process) {
+                        continue;
                     }
-                    this.mainQueue.remove(process);
-                    this.priorityQueue.remove(process);
-                    this.blockedQueue.add(process);
+                    this.stop(process);
+                    this.move(process, this.blockedQueue);
                     this.log("[SCHEDULER] Blocked PID " + process.getPid());
                 }
             }
@@ -225,15 +414,14 @@ public class Scheduler implements Runnable {
             //Unblock, drop and skip can all be responses to CPU operations, so must execute after it blocks the process
             //to prevent errors
             if (message != null) {
-                String[] command = message.getCommand();
-                switch (command[0]) {
+                switch (message.getCommand()) {
                     //unblock [pid]
-                    case "unblock": {
-                        int pid = Integer.parseInt(command[1]);
-                        PCB process = this.processes.get(pid);
-                        if (this.blockedQueue.contains(process)) {
-                            this.blockedQueue.remove(process);
-                            this.priorityQueue.add(process);
+                    case UNBLOCK: {
+                        int pid = message.getPid();
+                        PCB process = this.getProcess(pid);
+                        if (process != null && process.getState() == ProcessState.BLOCKED) {
+                            process.setBlocked(false);
+                            this.ready(process, this.policy::wake);
                             this.log("[SCHEDULER] Unblocked PID " + pid);
                         } else {
                             this.log("[SCHEDULER/ERROR] Attempted to unblock PID " + pid + ", but it wasn't blocked");
@@ -242,99 +430,109 @@ public class Scheduler implements Runnable {
                     break;
 
                     //drop [pid]
-                    case "drop": {
-                        int pid = Integer.parseInt(command[1]);
-                        PCB process = this.processes.get(pid);
-                        if (this.running == process) {
-                            this.running = null;
+                    case DROP: {
+                        int pid = message.getPid();
+                        PCB process = this.getProcess(pid);
+                        //Both the MMU and CPU may ask for the same process to be dropped
+                        if (process == null) {
+                            break;
                         }
-                        this.mainQueue.remove(process);
-                        this.priorityQueue.remove(process);
-                        this.blockedQueue.remove(process);
-                        this.swapQueue.remove(process);
-                        this.processes.remove(pid);
-                        this.mailbox.put(Mailbox.SCHEDULER, Mailbox.MMU, "drop|" + pid);
-                        this.mailbox.put(Mailbox.SCHEDULER, Mailbox.CPU, "drop|" + pid);
+                        this.stop(process);
+                        //Wait for any core part way through a cycle of the process, and hold it so no core runs it
+                        //again, so nothing more is sent about it once the MMU has been told to drop it
+                        while (!process.acquire()) {
+                            Thread.onSpinWait();
+                        }
+                        this.detach(process);
+                        process.setState(ProcessState.DROPPED);
+                        this.turnaround.add(this.cycle - process.getCreated());
+                        this.waitTime.add(process.getWaitTime());
+                        this.updateSwappable(process);
+                        this.prefetched.remove(process);
+                        this.prefetching.remove(process);
+                        //The PID is released once the MMU has finished with the process
+                        this.processes[pid] = null;
+                        this.mailbox.put(Mailbox.SCHEDULER, Mailbox.MMU, Command.DROP, pid);
+                        //Only the core that last ran the process may have its output open
+                        this.mailbox.put(Mailbox.SCHEDULER, Mailbox.cpu(Math.max(process.getCore(), 0)), Command.DROP, pid, 0, process, false);
                         this.log("[SCHEDULER] Dropped PID " + pid);
                     }
                     break;
 
                     //skip [pid]
-                    case "skip": {
-                        int pid = Integer.parseInt(command[1]);
-                        PCB process = this.processes.get(pid);
-                        if (this.running == process) {
-                            this.running = null;
+                    case SKIP: {
+                        int pid = message.getPid();
+                        PCB process = this.getProcess(pid);
+                        if (process == null) {
+                            break;
                         }
-                        this.blockedQueue.remove(process);
-                        this.swapQueue.remove(process);
-                        this.loadingQueue.remove(process);
-                        this.mainQueue.add(process);
+                        this.stop(process);
+                        process.setBlocked(false);
+                        this.ready(process, this.policy::add);
                         this.log("[SCHEDULER] Skipped PID " + pid);
                     }
                     break;
                 }
             }
-
-            //Release swap lock, allowing MMU to swap processes
-            this.swapLock.unlock();
-
-            //Wait for next clock cycle
-            try {
-                Thread.sleep((long)((1/clockSpeed) * 1000));
-            }
-            catch (InterruptedException e) {
-                return;
-            }
         }
     }
 
     /**
-     * Switch to the next process
+     * Switch a core to the next process
+     * @param core Core number
      */
-    private void switchProcess() {
-        //Move a process from main queue to priority queue if priority queue is empty
-        if (this.priorityQueue.isEmpty() && !this.mainQueue.isEmpty()) {
-            PCB process = this.mainQueue.poll();
-            this.log("[SCHEDULER] Moved PID " + process.getPid() + " to priority queue");
-            this.priorityQueue.add(process);
-        }
-        //Check priority queue has a process
-        if (!this.priorityQueue.isEmpty()) {
-            PCB process = this.priorityQueue.poll();
+    private void switchProcess(int core) {
+        //Check the policy has a process ready to run
+        PCB process = this.policy.poll();
+        if (process != null) {
+            process.addWaitTime(this.cycle - process.getReadyTime());
             //Check process has been loaded from it's file
             if (process.isLoaded()) {
                 //Check process is not swapped out
                 if (!process.isSwapped()) {
-                    this.running = process;
-                    this.log("[SCHEDULER] Switched to running PID "+ process.getPid());
+                    process.setCore(core);
+                    process.setState(ProcessState.RUNNING);
+                    this.updateSwappable(process);
+                    this.running.set(core, process);
+                    this.mailbox.wake(Mailbox.cpu(core));
+                    this.log("[SCHEDULER] Switched core " + core + " to running PID "+ process.getPid());
                 }
-                //Swap in process
+                //Swap in process, unless a prefetch is already swapping it in
                 else {
-                    this.mailbox.put(Mailbox.SCHEDULER, Mailbox.MMU, "swapIn|" + process.getPid());
-                    this.swapQueue.add(process);
+                    if (!this.prefetching.contains(process)) {
+                        this.mailbox.put(Mailbox.SCHEDULER, Mailbox.MMU, Command.SWAP_IN, process.getPid(), 0, false);
+                    }
+                    this.move(process, this.swapQueue);
                     this.log("[SCHEDULER] Waiting for PID " + process.getPid() + " to be swapped in");
                 }
             }
-            //Load process file
+            //Load process code
             else {
-                //Attempt to allocate memory
-                try {
-                    //Get required memory
-                    Stream<String> stream = Files.lines(process.getCodePath());
-                    int blocks = (int) stream.count();
-                    stream.close();
-                    process.setCodeLength(blocks);
-                    //Allocate
-                    this.mailbox.put(Mailbox.SCHEDULER, Mailbox.MMU, "allocate|" + process.getPid() + "|" + blocks + "|true");
-                    this.loadingQueue.add(process);
-                    this.log("[SCHEDULER] Waiting for PID " + process.getPid() + " to be loaded from file");
+                //Attempt to allocate memory for the code
+                this.mailbox.put(Mailbox.SCHEDULER, Mailbox.MMU, Command.ALLOCATE, process.getPid(), process.getCodeLength(), true);
+                this.move(process, this.loadingQueue);
+                this.log("[SCHEDULER] Waiting for PID " + process.getPid() + " to be loaded");
+                //Code image will be sent after MMU notifies of successful allocation
+            }
+        }
+    }
 
-                }
-                catch (IOException e) {
-                    e.printStackTrace();
-                }
-                //Write commands will be sent after MMU notifies of successful allocation
+    /**
+     * Ask the MMU to prefetch swapped out processes among the next lookahead processes to run.<br>
+     * The MMU only prefetches into free frames, keeping some free for processes that are running, so a prefetch never
+     * adds to memory pressure. Each process is only prefetched once each time it is swapped out.
+     */
+    private void prefetch() {
+        int seen = 0;
+        for (PCB process : this.policy) {
+            if (seen++ == this.lookahead) {
+                return;
+            }
+            if (process.isLoaded() && process.isSwapped() && this.prefetched.add(process)) {
+                this.prefetching.add(process);
+                this.prefetches++;
+                this.mailbox.put(Mailbox.SCHEDULER, Mailbox.MMU, Command.SWAP_IN, process.getPid(), 0, true);
+                this.log("[SCHEDULER] Prefetching PID " + process.getPid());
             }
         }
     }
@@ -0,0 +1,198 @@
+package com.cd00827.OSSimulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Scheduling policy used by the scheduler to choose which process to run next, and when to preempt a running process.<br>
+ * The policy holds every process that is ready to run. The scheduler tells the policy why a process became ready, so
+ * the policy can favour processes that block often, and asks it every cycle whether each running process has used up
+ * its time slice. Processes that were chosen to run but had to be swapped in first are always run before any others,
+ * otherwise they could be swapped out again before they run.<br>
+ * Whenever the policy queues a process it ranks it by how soon it will run, so the MMU can evict pages of the processes
+ * that will run last first.<br>
+ * Only used by the scheduler thread, so is not thread safe.
+ * @author cd00827
+ */
+public abstract class SchedulingPolicy implements Iterable<PCB> {
+    //Names of the available policies, in the order they are offered to the user
+    public static final String[] NAMES = {"Round robin", "Fair", "MLFQ"};
+
+    //Processes to run before any others
+    private final ProcessQueue next;
+    //Queues of waiting processes, in the order the policy chooses from them
+    private final List<Iterable<PCB>> queues;
+    //Number of processes queued so far, used to rank processes in the order they were queued
+    private long sequence;
+
+    /**
+     * Constructor
+     */
+    protected SchedulingPolicy() {
+        this.next = new ProcessQueue(ProcessState.PRIORITY);
+        this.queues = new ArrayList<>();
+        this.queues.add(this.next);
+        this.sequence = 0;
+    }
+
+    /**
+     * Create a policy by name
+     * @param name One of NAMES
+     * @param quantum Number of cycles in a time slice
+     * @return Policy
+     * @throws IllegalArgumentException If the name is not a policy
+     */
+    public static SchedulingPolicy of(String name, int quantum) {
+        switch (name) {
+            case "Round robin":
+                return new RoundRobinPolicy(quantum);
+
+            case "Fair":
+                return new FairPolicy(quantum);
+
+            case "MLFQ":
+                return new MLFQPolicy(quantum);
+
+            default:
+                throw new IllegalArgumentException("Invalid scheduling policy: " + name);
+        }
+    }
+
+    /**
+     * Called when a new process is created, or a process is skipped
+     * @param process Process
+     */
+    public abstract void add(PCB process);
+
+    /**
+     * Called when a running process is preempted after using up its time slice
+     * @param process Process
+     */
+    public abstract void preempt(PCB process);
+
+    /**
+     * Called when a process is unblocked
+     * @param process Process
+     */
+    public abstract void wake(PCB process);
+
+    /**
+     * Called once every cycle for each running process
+     * @param process Process
+     * @return True if the process should be preempted
+     */
+    public abstract boolean tick(PCB process);
+
+    /**
+     * Called once every cycle after every running process has been ticked, to let the policy move waiting processes
+     * around
+     * @return True if waiting processes were moved, so their ranks may have changed
+     */
+    public boolean rebalance() {
+        return false;
+    }
+
+    /**
+     * Choose the next process to run out of the waiting processes
+     * @return Process, or null if no process is waiting
+     */
+    protected abstract PCB choose();
+
+    /**
+     * Stop holding a waiting process
+     * @param process Process
+     */
+    protected abstract void forget(PCB process);
+
+    /**
+     * Get the name of this policy
+     * @return One of NAMES
+     */
+    public abstract String getName();
+
+    /**
+     * Add a queue of waiting processes, used by subclasses to say which processes iterator returns and in what order
+     * @param queue Queue, after all the queues already added
+     */
+    protected void order(Iterable<PCB> queue) {
+        this.queues.add(queue);
+    }
+
+    /**
+     * Get the next number in the order processes are queued, for ranking processes that run in the order they were
+     * queued
+     * @return Sequence number, counting up from 1
+     */
+    protected long sequence() {
+        return ++this.sequence;
+    }
+
+    /**
+     * Called when a process that was chosen to run has been swapped in, it will run before any other process
+     * @param process Process
+     */
+    public void requeue(PCB process) {
+        //Rank below any rank a policy gives
+        process.setRank(Long.MIN_VALUE + this.sequence());
+        this.next.add(process);
+    }
+
+    /**
+     * Remove the next process to run
+     * @return Process, or null if no process is ready to run
+     */
+    public PCB poll() {
+        PCB process = this.next.poll();
+        return process != null ? process : this.choose();
+    }
+
+    /**
+     * Remove a process, if this policy holds it
+     * @param process Process
+     */
+    public void remove(PCB process) {
+        if (!this.next.remove(process)) {
+            this.forget(process);
+        }
+    }
+
+    /**
+     * Check if no process is ready to run
+     * @return True if empty
+     */
+    public boolean isEmpty() {
+        return !this.iterator().hasNext();
+    }
+
+    /**
+     * Iterate over the processes ready to run, roughly in the order they will run. The policy must not be changed while
+     * iterating
+     * @return Iterator
+     */
+    @Override
+    public Iterator<PCB> iterator() {
+        return new Iterator<PCB>() {
+            private final Iterator<Iterable<PCB>> queues = SchedulingPolicy.this.queues.iterator();
+            private Iterator<PCB> queue = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!this.queue.hasNext() && this.queues.hasNext()) {
+                    this.queue = this.queues.next().iterator();
+                }
+                return this.queue.hasNext();
+            }
+
+            @Override
+            public PCB next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return this.queue.next();
+            }
+        };
+    }
+}
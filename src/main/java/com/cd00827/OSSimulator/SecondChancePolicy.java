@@ -0,0 +1,106 @@
+package com.cd00827.OSSimulator;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Second chance page replacement.<br>
+ * Pages are considered in the order they were loaded, as with FIFO. A page that has been accessed since it was loaded
+ * or last given a second chance has its reference bit cleared and goes to the back of the queue instead of being
+ * evicted.
+ * @author cd00827
+ */
+public class SecondChancePolicy extends ReplacementPolicy {
+    //Time each frame joined the back of the queue
+    private final long[] queued;
+    private final boolean[] referenced;
+    private long time;
+
+    /**
+     * Constructor
+     * @param frames Number of frames of physical memory
+     */
+    public SecondChancePolicy(int frames) {
+        this.queued = new long[frames];
+        this.referenced = new boolean[frames];
+        this.time = 0;
+    }
+
+    /**
+     * Record that a page has been loaded into a frame
+     * @param frame Frame number
+     */
+    @Override
+    public void loaded(int frame) {
+        this.queued[frame] = ++this.time;
+        this.referenced[frame] = false;
+    }
+
+    /**
+     * Record that a frame has been read or written
+     * @param frame Frame number
+     */
+    @Override
+    public void accessed(int frame) {
+        this.referenced[frame] = true;
+    }
+
+    /**
+     * Choose a frame to evict
+     * @param candidate Test for the frames that may be evicted
+     * @return Frame number, or -1 if no frame passes the test
+     */
+    @Override
+    protected int choose(IntPredicate candidate) {
+        while (true) {
+            //Find the front of the queue
+            int oldest = -1;
+            for (int frame = 0; frame < this.queued.length; frame++) {
+                if (candidate.test(frame) && (oldest < 0 || this.queued[frame] < this.queued[oldest])) {
+                    oldest = frame;
+                }
+            }
+            if (oldest < 0 || !this.referenced[oldest]) {
+                return oldest;
+            }
+            //Give it a second chance, every page is eventually evicted once all the bits are cleared
+            this.referenced[oldest] = false;
+            this.queued[oldest] = ++this.time;
+        }
+    }
+
+    /**
+     * Choose a frame to evict out of a list of frames
+     * @param frames Frames that may be evicted
+     * @param count Number of frames in the list
+     * @return Frame number, or -1 if the list is empty
+     */
+    @Override
+    protected int choose(int[] frames, int count) {
+        if (count == 0) {
+            return -1;
+        }
+        while (true) {
+            //Find the front of the queue
+            int oldest = frames[0];
+            for (int i = 1; i < count; i++) {
+                if (this.queued[frames[i]] < this.queued[oldest]) {
+                    oldest = frames[i];
+                }
+            }
+            if (!this.referenced[oldest]) {
+                return oldest;
+            }
+            this.referenced[oldest] = false;
+            this.queued[oldest] = ++this.time;
+        }
+    }
+
+    /**
+     * Get the name of this policy
+     * @return Name shown to the user
+     */
+    @Override
+    public String getName() {
+        return "Second chance";
+    }
+}
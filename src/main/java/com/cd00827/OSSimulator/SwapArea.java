@@ -0,0 +1,251 @@
+package com.cd00827.OSSimulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Swap space for pages written back by the MMU, kept in a single file that is memory mapped.<br>
+ * The file is divided into fixed size slots. A page is encoded into a compact binary record, and stored in a chain of
+ * as many slots as the record needs. Each slot starts with the index of the next slot in the chain, or -1, and the
+ * number of bytes of the record it holds. Freed slots are reused before the file is made bigger, and the file doubles in
+ * size when every slot is in use.<br>
+ * Each block of a page is recorded as its type, followed by its number for NUMBER blocks, its number and text for
+ * NUMERIC_TEXT blocks and its text for TEXT blocks. Code blocks are recorded as the text of their instruction and come
+ * back as TEXT blocks, which the CPU decodes again when it fetches them.
+ * @author cd00827
+ */
+public class SwapArea {
+    private static final int HEADER = 8;
+    private static final CellType[] TYPES = CellType.values();
+
+    private final FileChannel channel;
+    private final int slotSize;
+    private MappedByteBuffer buffer;
+    private int slots;
+    //Stack of freed slots, and the number of slots that have ever been used
+    private int[] freeSlots;
+    private int freeSlotCount;
+    private int used;
+    //Scratch space for reading records
+    private ByteBuffer record;
+
+    /**
+     * Constructor, creates the swap file, replacing any left by a previous run
+     * @param path Path of the swap file
+     * @param slotSize Size of each slot in bytes, including the header
+     * @param slots Number of slots to size the file for initially
+     * @throws IOException If the file cannot be created or mapped
+     */
+    public SwapArea(Path path, int slotSize, int slots) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.slotSize = Math.max(slotSize, HEADER + 1);
+        this.slots = Math.max(slots, 1);
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) this.slots * this.slotSize);
+        this.freeSlots = new int[16];
+        this.freeSlotCount = 0;
+        this.used = 0;
+        this.record = ByteBuffer.allocate(this.slotSize * 4);
+    }
+
+    /**
+     * Encode blocks of memory into a record
+     * @param ram Memory to copy from
+     * @param address First physical address to copy
+     * @param length Number of blocks to copy
+     * @param record Scratch space to encode into, replaced by a bigger buffer if it is too small
+     * @return The record, ready to be read
+     */
+    public static ByteBuffer encode(Memory ram, int address, int length, ByteBuffer record) {
+        record.clear();
+        for (int i = address; i < address + length; i++) {
+            CellType type = ram.getType(i);
+            switch (type) {
+                case EMPTY:
+                    record = ensure(record, 1);
+                    record.put((byte) type.ordinal());
+                    break;
+
+                case NUMBER:
+                    record = ensure(record, 9);
+                    record.put((byte) type.ordinal());
+                    record.putDouble(ram.getNumber(i));
+                    break;
+
+                case NUMERIC_TEXT: {
+                    byte[] text = String.valueOf(ram.getObject(i)).getBytes(StandardCharsets.UTF_8);
+                    record = ensure(record, 13 + text.length);
+                    record.put((byte) type.ordinal());
+                    record.putDouble(ram.getNumber(i));
+                    record.putInt(text.length);
+                    record.put(text);
+                }
+                break;
+
+                default: {
+                    byte[] text = String.valueOf(ram.getObject(i)).getBytes(StandardCharsets.UTF_8);
+                    record = ensure(record, 5 + text.length);
+                    record.put((byte) CellType.TEXT.ordinal());
+                    record.putInt(text.length);
+                    record.put(text);
+                }
+            }
+        }
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Decode a record back into blocks of memory
+     * @param record Record, as returned by encode or read
+     * @param ram Memory to copy into
+     * @param address First physical address to copy into
+     * @param length Number of blocks to copy
+     */
+    public static void decode(ByteBuffer record, Memory ram, int address, int length) {
+        for (int i = address; i < address + length; i++) {
+            CellType type = TYPES[record.get()];
+            switch (type) {
+                case EMPTY:
+                    ram.clear(i);
+                    break;
+
+                case NUMBER:
+                    ram.set(i, type, record.getDouble(), null);
+                    break;
+
+                case NUMERIC_TEXT: {
+                    double number = record.getDouble();
+                    ram.set(i, type, number, text(record));
+                }
+                break;
+
+                default:
+                    ram.set(i, type, 0, text(record));
+            }
+        }
+    }
+
+    /**
+     * Write a record to swap
+     * @param record Record to write, from its position to its limit
+     * @return First slot of the record, to pass to read and free
+     * @throws IOException If the swap file needs to grow and cannot be mapped
+     */
+    public int write(ByteBuffer record) throws IOException {
+        //Copy it into a chain of slots, linking each slot to the next as it is claimed
+        int first = this.claim();
+        int slot = first;
+        while (true) {
+            int bytes = Math.min(record.remaining(), this.slotSize - HEADER);
+            int offset = slot * this.slotSize;
+            this.buffer.putInt(offset + 4, bytes);
+            this.buffer.position(offset + HEADER);
+            this.buffer.put(record.array(), record.arrayOffset() + record.position(), bytes);
+            record.position(record.position() + bytes);
+            if (!record.hasRemaining()) {
+                this.buffer.putInt(offset, -1);
+                return first;
+            }
+            int next = this.claim();
+            this.buffer.putInt(offset, next);
+            slot = next;
+        }
+    }
+
+    /**
+     * Read a record from swap
+     * @param slot First slot of the record, as returned by write
+     * @return The record, ready to be decoded. It is only valid until the next read
+     */
+    public ByteBuffer read(int slot) {
+        //Gather the record from its chain of slots
+        this.record.clear();
+        while (slot >= 0) {
+            int offset = slot * this.slotSize;
+            int bytes = this.buffer.getInt(offset + 4);
+            this.record = ensure(this.record, bytes);
+            this.buffer.position(offset + HEADER);
+            this.buffer.get(this.record.array(), this.record.position(), bytes);
+            this.record.position(this.record.position() + bytes);
+            slot = this.buffer.getInt(offset);
+        }
+        this.record.flip();
+        return this.record;
+    }
+
+    /**
+     * Free a record so its slots can be reused
+     * @param slot First slot of the record
+     */
+    public void free(int slot) {
+        while (slot >= 0) {
+            if (this.freeSlotCount == this.freeSlots.length) {
+                this.freeSlots = Arrays.copyOf(this.freeSlots, this.freeSlotCount * 2);
+            }
+            this.freeSlots[this.freeSlotCount++] = slot;
+            slot = this.buffer.getInt(slot * this.slotSize);
+        }
+    }
+
+    /**
+     * Close the swap file
+     * @throws IOException If closing fails
+     */
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Claim a free slot, growing the file if every slot is in use
+     * @return Slot index
+     * @throws IOException If the file cannot be mapped at its new size
+     */
+    private int claim() throws IOException {
+        if (this.freeSlotCount > 0) {
+            return this.freeSlots[--this.freeSlotCount];
+        }
+        if (this.used == this.slots) {
+            this.slots *= 2;
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) this.slots * this.slotSize);
+        }
+        return this.used++;
+    }
+
+    /**
+     * Make sure a record can hold more bytes
+     * @param record Record being built
+     * @param bytes Number of bytes about to be added
+     * @return The record, or a bigger copy of it if it did not have room
+     */
+    private static ByteBuffer ensure(ByteBuffer record, int bytes) {
+        if (record.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + bytes));
+            record.flip();
+            bigger.put(record);
+            return bigger;
+        }
+        return record;
+    }
+
+    /**
+     * Decode a length prefixed string from a record
+     * @param record Record
+     * @return Text
+     */
+    private static String text(ByteBuffer record) {
+        int length = record.getInt();
+        String text = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return text;
+    }
+}
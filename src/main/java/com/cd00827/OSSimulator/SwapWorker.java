@@ -0,0 +1,277 @@
+package com.cd00827.OSSimulator;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Performs swap area I/O for the MMU on its own thread.<br>
+ * The MMU queues requests to read, write and free pages, and carries on handling messages for other processes while
+ * they are carried out. Requests are carried out one at a time in the order they were queued, so a slot is never freed
+ * or reused before a read queued earlier has finished with it. When a read or write completes, the request is sent back
+ * to the MMU in a pageRead or pageWritten message. When a process is dropped, a dropped message is sent back once every
+ * request queued before it has been carried out, so the MMU knows nothing more will arrive for the process.
+ * @author cd00827
+ */
+public class SwapWorker implements Runnable {
+    private final BlockingQueue<Request> requests;
+    private final Path path;
+    private final int slotSize;
+    private final int slots;
+    //Created the first time a page is written
+    private SwapArea swap;
+    private final Mailbox mailbox;
+    private final ObservableList<String> log;
+    private volatile long reads;
+    private volatile long writes;
+    private volatile long busyTime;
+
+    /**
+     * A request to read, write or free a page in the swap area
+     */
+    public static class Request {
+        //PAGE_READ, PAGE_WRITTEN, DROPPED or FREE
+        private final Command command;
+        private final int pid;
+        private final int page;
+        private final int frame;
+        private int slot;
+        private byte[] record;
+
+        /**
+         * Constructor
+         * @param command Command to reply with once the request is complete, or FREE to not reply
+         * @param pid PID of process the page belongs to
+         * @param page Page number
+         * @param frame Frame offset reserved for a page being read
+         * @param slot First slot of the page's record, for reads and frees
+         * @param record Record of the page, for writes
+         */
+        private Request(Command command, int pid, int page, int frame, int slot, byte[] record) {
+            this.command = command;
+            this.pid = pid;
+            this.page = page;
+            this.frame = frame;
+            this.slot = slot;
+            this.record = record;
+        }
+
+        /**
+         * Get the PID of the process the page belongs to
+         * @return PID
+         */
+        public int getPid() {
+            return this.pid;
+        }
+
+        /**
+         * Get the page number
+         * @return Page number
+         */
+        public int getPage() {
+            return this.page;
+        }
+
+        /**
+         * Get the frame reserved for a page being read
+         * @return Frame offset
+         */
+        public int getFrame() {
+            return this.frame;
+        }
+
+        /**
+         * Get the first slot of the page's record, only valid for writes once they have completed
+         * @return Slot
+         */
+        public int getSlot() {
+            return this.slot;
+        }
+
+        /**
+         * Get the record of the page, for writes, and for reads once they have completed
+         * @return The record, ready to be decoded
+         */
+        public ByteBuffer getRecord() {
+            return ByteBuffer.wrap(this.record);
+        }
+    }
+
+    /**
+     * Constructor
+     * @param path Path of the swap file
+     * @param slotSize Size of each slot of the swap file in bytes
+     * @param slots Number of slots to size the swap file for initially
+     * @param mailbox Mailbox to send completed requests to the MMU with
+     * @param log Log to output messages to
+     */
+    public SwapWorker(Path path, int slotSize, int slots, Mailbox mailbox, ObservableList<String> log) {
+        this.requests = new LinkedBlockingQueue<>();
+        this.path = path;
+        this.slotSize = slotSize;
+        this.slots = slots;
+        this.mailbox = mailbox;
+        this.log = log;
+        this.reads = 0;
+        this.writes = 0;
+        this.busyTime = 0;
+    }
+
+    /**
+     * Queue a read of a page from the swap area
+     * @param pid PID of process the page belongs to
+     * @param page Page number
+     * @param slot First slot of the page's record
+     * @param frame Frame offset reserved for the page
+     */
+    public void read(int pid, int page, int slot, int frame) {
+        this.requests.add(new Request(Command.PAGE_READ, pid, page, frame, slot, null));
+    }
+
+    /**
+     * Queue a write of a page to the swap area
+     * @param pid PID of process the page belongs to
+     * @param page Page number
+     * @param record Record of the page, from its position to its limit. It is copied, so may be reused straight away
+     * @return The request, which holds the record until the page has been written
+     */
+    public Request write(int pid, int page, ByteBuffer record) {
+        int offset = record.arrayOffset() + record.position();
+        Request request = new Request(Command.PAGE_WRITTEN, pid, page, -1, -1, Arrays.copyOfRange(record.array(), offset, offset + record.remaining()));
+        this.requests.add(request);
+        return request;
+    }
+
+    /**
+     * Queue freeing a page's record so its slots can be reused
+     * @param slot First slot of the record
+     */
+    public void free(int slot) {
+        this.requests.add(new Request(Command.FREE, -1, -1, -1, slot, null));
+    }
+
+    /**
+     * Queue a marker for a dropped process, which is sent back to the MMU once every request queued before it is done
+     * @param pid PID of the dropped process
+     */
+    public void drop(int pid) {
+        this.requests.add(new Request(Command.DROPPED, pid, -1, -1, -1, null));
+    }
+
+    /**
+     * Get the number of pages read from the swap area
+     * @return Reads
+     */
+    public long getReads() {
+        return this.reads;
+    }
+
+    /**
+     * Get the number of pages written to the swap area
+     * @return Writes
+     */
+    public long getWrites() {
+        return this.writes;
+    }
+
+    /**
+     * Get the total time spent carrying out requests
+     * @return Time in nanoseconds
+     */
+    public long getBusyTime() {
+        return this.busyTime;
+    }
+
+    /**
+     * Write a message to the log
+     * @param message Message
+     */
+    private void log(String message) {
+        Platform.runLater(() -> this.log.add(message));
+    }
+
+    /**
+     * Entry point when starting the swap worker thread.<br>
+     * Will throw a RuntimeException if the swap file cannot be used, as an inability to swap will prevent the simulator
+     * from functioning correctly.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            Request request;
+            try {
+                request = this.requests.take();
+            }
+            catch (InterruptedException e) {
+                this.close();
+                return;
+            }
+
+            long start = System.nanoTime();
+            try {
+                switch (request.command) {
+                    case PAGE_READ: {
+                        ByteBuffer record = this.swap.read(request.slot);
+                        request.record = Arrays.copyOf(record.array(), record.limit());
+                        this.reads++;
+                    }
+                    break;
+
+                    case PAGE_WRITTEN:
+                        request.slot = this.getSwap().write(ByteBuffer.wrap(request.record));
+                        this.writes++;
+                        break;
+
+                    case FREE:
+                        this.swap.free(request.slot);
+                        break;
+
+                    case DROPPED:
+                        break;
+                }
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+                this.log("[SWAP/FATAL] Paging PID " + request.pid + " failed, check you have r/w access to /swap");
+                throw new RuntimeException("[SWAP/FATAL] Paging PID " + request.pid + " failed, check you have r/w access to /swap");
+            }
+            this.busyTime += System.nanoTime() - start;
+
+            if (request.command != Command.FREE) {
+                this.mailbox.put(Mailbox.SWAP, Mailbox.MMU, request.command, request.pid, request.page, request, false);
+            }
+        }
+    }
+
+    /**
+     * Get the swap area, creating it if this is the first page to be written
+     * @return Swap area
+     * @throws IOException If the swap file cannot be created
+     */
+    private SwapArea getSwap() throws IOException {
+        if (this.swap == null) {
+            this.swap = new SwapArea(this.path, this.slotSize, this.slots);
+        }
+        return this.swap;
+    }
+
+    /**
+     * Close the swap area if it has been created
+     */
+    private void close() {
+        if (this.swap != null) {
+            try {
+                this.swap.close();
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
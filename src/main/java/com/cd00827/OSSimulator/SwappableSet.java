@@ -0,0 +1,98 @@
+package com.cd00827.OSSimulator;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Processes whose pages the MMU should prefer to evict, ordered by how long it will be until they next run.<br>
+ * The scheduler adds and removes processes as they move in and out of the scheduling policy, along with the rank the
+ * policy gave them, and the MMU iterates over them from the process that will run last to the process that will run
+ * first. Processes with the same rank are ordered most recently added first. Both threads may use this at the same
+ * time without locking, the MMU sees each process either before or after a change but never a partly made change.
+ * @author cd00827
+ */
+public class SwappableSet implements Iterable<PCB> {
+    //Map each process to its position, and positions to processes in order of preference
+    private final Map<PCB, Position> positions;
+    private final ConcurrentNavigableMap<Position, PCB> order;
+    private long sequence;
+
+    /**
+     * Position of a process in the order, which never changes once created
+     */
+    private static class Position {
+        private final long rank;
+        //Breaks ties between processes with the same rank, and keeps every position distinct
+        private final long sequence;
+
+        /**
+         * Constructor
+         * @param rank Rank given by the scheduling policy
+         * @param sequence Number of processes added before this one
+         */
+        private Position(long rank, long sequence) {
+            this.rank = rank;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Constructor
+     */
+    public SwappableSet() {
+        this.positions = new ConcurrentHashMap<>();
+        //Highest rank first, then most recently added first
+        Comparator<Position> order = Comparator.comparingLong((Position position) -> position.rank).thenComparingLong(position -> position.sequence);
+        this.order = new ConcurrentSkipListMap<>(order.reversed());
+        this.sequence = 0;
+    }
+
+    /**
+     * Add a process, or move it if it is already in this set. Only called by the scheduler
+     * @param process Process
+     * @param rank Rank given by the scheduling policy, processes with lower ranks run sooner
+     */
+    public void add(PCB process, long rank) {
+        Position position = new Position(rank, ++this.sequence);
+        //Add at the new position before removing the old one, so the MMU never misses the process
+        this.order.put(position, process);
+        Position old = this.positions.put(process, position);
+        if (old != null) {
+            this.order.remove(old);
+        }
+    }
+
+    /**
+     * Remove a process, if it is in this set. Only called by the scheduler
+     * @param process Process
+     */
+    public void remove(PCB process) {
+        Position old = this.positions.remove(process);
+        if (old != null) {
+            this.order.remove(old);
+        }
+    }
+
+    /**
+     * Check if a process is in this set
+     * @param process Process
+     * @return True if the MMU should prefer to evict the process' pages
+     */
+    public boolean contains(PCB process) {
+        return this.positions.containsKey(process);
+    }
+
+    /**
+     * Iterate over the processes in order of preference, the process that will run last first. Changes made while
+     * iterating may or may not be seen
+     * @return Iterator
+     */
+    @Override
+    public Iterator<PCB> iterator() {
+        return this.order.values().iterator();
+    }
+}
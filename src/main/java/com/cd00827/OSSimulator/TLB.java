@@ -0,0 +1,141 @@
+package com.cd00827.OSSimulator;
+
+/**
+ * Translation lookaside buffer, caching the frame each (pid, page) pair is mapped to.<br>
+ * Entries are split into sets of a fixed number of ways. A page can only be cached in one set, and the least recently
+ * used entry in the set is replaced when it is full. One way gives a direct mapped TLB, and as many ways as entries a
+ * fully associative one. Lookups work on primitive arrays, so they do not allocate.
+ * @author cd00827
+ */
+public class TLB {
+    private final int ways;
+    private final int mask;
+    private final int[] pids;
+    private final int[] pages;
+    private final int[] frames;
+    //Time each entry was last used, 0 if the entry is empty
+    private final long[] used;
+    private long time;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor
+     * @param size Number of entries, rounded up so there is a power of 2 number of sets
+     * @param ways Number of entries in each set
+     */
+    public TLB(int size, int ways) {
+        this.ways = Math.max(ways, 1);
+        int sets = Integer.highestOneBit(Math.max(size / this.ways, 1));
+        if (sets * this.ways < size) {
+            sets <<= 1;
+        }
+        this.mask = sets - 1;
+        this.pids = new int[sets * this.ways];
+        this.pages = new int[sets * this.ways];
+        this.frames = new int[sets * this.ways];
+        this.used = new long[sets * this.ways];
+        this.time = 0;
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Get the first entry of the set a page is cached in
+     * @param pid PID of process
+     * @param page Page number
+     * @return Index of the first entry
+     */
+    private int set(int pid, int page) {
+        return ((page ^ pid * 0x9E3779B9) & this.mask) * this.ways;
+    }
+
+    /**
+     * Look up the frame a page is mapped to
+     * @param pid PID of process
+     * @param page Page number
+     * @return Frame offset, or -1 if the translation is not cached
+     */
+    public int lookup(int pid, int page) {
+        int set = this.set(pid, page);
+        for (int i = set; i < set + this.ways; i++) {
+            if (this.used[i] != 0 && this.pids[i] == pid && this.pages[i] == page) {
+                this.used[i] = ++this.time;
+                this.hits++;
+                return this.frames[i];
+            }
+        }
+        this.misses++;
+        return -1;
+    }
+
+    /**
+     * Cache the frame a page is mapped to, replacing the least recently used entry in its set
+     * @param pid PID of process
+     * @param page Page number
+     * @param frame Frame offset
+     */
+    public void insert(int pid, int page, int frame) {
+        int set = this.set(pid, page);
+        int victim = set;
+        for (int i = set; i < set + this.ways; i++) {
+            if (this.used[i] < this.used[victim]) {
+                victim = i;
+            }
+        }
+        this.pids[victim] = pid;
+        this.pages[victim] = page;
+        this.frames[victim] = frame;
+        this.used[victim] = ++this.time;
+    }
+
+    /**
+     * Remove the translation of a single page
+     * @param pid PID of process
+     * @param page Page number
+     */
+    public void invalidate(int pid, int page) {
+        int set = this.set(pid, page);
+        for (int i = set; i < set + this.ways; i++) {
+            if (this.pids[i] == pid && this.pages[i] == page) {
+                this.used[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Remove every translation belonging to a process
+     * @param pid PID of process
+     */
+    public void invalidate(int pid) {
+        for (int i = 0; i < this.pids.length; i++) {
+            if (this.pids[i] == pid) {
+                this.used[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Get the number of entries in this TLB
+     * @return Entries
+     */
+    public int getSize() {
+        return this.pids.length;
+    }
+
+    /**
+     * Get the number of translations found in this TLB
+     * @return Hits
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Get the number of translations that had to be looked up in the page table
+     * @return Misses
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+}
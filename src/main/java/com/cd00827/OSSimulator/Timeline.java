@@ -0,0 +1,96 @@
+package com.cd00827.OSSimulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Virtual time shared by a set of clocks, used to run the simulator as fast as possible.<br>
+ * Instead of sleeping, each clock counts the virtual time its cycles start at, advancing by its own period each cycle.
+ * A clock may only start a cycle once no other active clock is still at an earlier time, so subsystems interleave
+ * in the same ratios as they would at their real clock speeds. Clocks waiting for work are idle and don't hold the
+ * others back; when they wake they carry on from the latest time any clock has reached.
+ * @author cd00827
+ */
+public class Timeline {
+    private final List<Clock> clocks;
+    private long now;
+
+    /**
+     * Constructor
+     */
+    public Timeline() {
+        this.clocks = new ArrayList<>();
+        this.now = 0;
+    }
+
+    /**
+     * Get the latest virtual time any clock has started a cycle at
+     * @return Virtual time in nanoseconds
+     */
+    public synchronized long getTime() {
+        return this.now;
+    }
+
+    /**
+     * Add a clock to this timeline, it starts idle
+     * @param clock Clock
+     */
+    synchronized void register(Clock clock) {
+        clock.time = this.now;
+        clock.idle = true;
+        this.clocks.add(clock);
+    }
+
+    /**
+     * Remove a clock from this timeline, used when its subsystem stops
+     * @param clock Clock
+     */
+    synchronized void unregister(Clock clock) {
+        this.clocks.remove(clock);
+        this.notifyAll();
+    }
+
+    /**
+     * Mark a clock as waiting for work
+     * @param clock Clock
+     */
+    synchronized void idle(Clock clock) {
+        clock.idle = true;
+        this.notifyAll();
+    }
+
+    /**
+     * Finish a clock's current cycle, then wait until its next cycle may start
+     * @param clock Clock
+     * @throws InterruptedException If interrupted while waiting
+     */
+    synchronized void await(Clock clock) throws InterruptedException {
+        if (clock.idle) {
+            clock.time = Math.max(clock.time + clock.getPeriod(), this.now);
+            clock.idle = false;
+        }
+        else {
+            clock.time += clock.getPeriod();
+        }
+        //Clocks waiting on this one's previous cycle may be able to go
+        this.notifyAll();
+        while (this.isBehind(clock)) {
+            this.wait();
+        }
+        this.now = Math.max(this.now, clock.time);
+    }
+
+    /**
+     * Check if any active clock is still at an earlier time than a clock
+     * @param clock Clock
+     * @return True if the clock must wait
+     */
+    private boolean isBehind(Clock clock) {
+        for (Clock other : this.clocks) {
+            if (other != clock && !other.idle && other.time < clock.time) {
+                return true;
+            }
+        }
+        return false;
+    }
+}